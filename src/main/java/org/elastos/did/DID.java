@@ -35,13 +35,26 @@ import org.elastos.did.parser.DIDURLBaseListener;
 import org.elastos.did.parser.DIDURLParser;
 import org.elastos.did.parser.ParserHelper;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 public class DID implements Comparable<DID> {
 	public final static String METHOD = "elastos";
 
 	private String method;
 	private String methodSpecificId;
+	private int hash;
 
 	private DIDMeta meta;
+	private boolean pooled;
+
+	/*
+	 * Optional intern pool, keyed by the method specific id. Values are
+	 * weakly referenced so unused DIDs are still collected. Pooled DIDs
+	 * are shared, so they never carry any metadata and are only used
+	 * inside DIDURL. The public API never hands them out.
+	 */
+	private static volatile Cache<String, DID> pool;
 
 	protected DID() {
 	}
@@ -55,6 +68,13 @@ public class DID implements Comparable<DID> {
 		if (did == null || did.isEmpty())
 			throw new IllegalArgumentException();
 
+		String[] parts = ParserHelper.parseSimple(did, true);
+		if (parts != null) {
+			this.method = METHOD;
+			this.methodSpecificId = parts[0];
+			return;
+		}
+
 		try {
 			ParserHelper.parse(did, true, new Listener());
 		} catch(IllegalArgumentException e) {
@@ -68,6 +88,7 @@ public class DID implements Comparable<DID> {
 
 	protected void setMethod(String method) {
 		this.method = method;
+		this.hash = 0;
 	}
 
 	public String getMethodSpecificId() {
@@ -76,23 +97,111 @@ public class DID implements Comparable<DID> {
 
 	protected void setMethodSpecificId(String methodSpecificId) {
 		this.methodSpecificId = methodSpecificId;
+		this.hash = 0;
+	}
+
+	/*
+	 * Enable the DID intern pool with at most maxSize DIDs, 0 to disable.
+	 *
+	 * Only the DIDs inside the parsed DIDURLs (key, credential and proof
+	 * ids) are pooled. Documents, credentials and presentations own their
+	 * subject, issuer and controller DIDs, and DIDURL.getDid() returns an
+	 * owned copy, so the DIDs returned by the public API behave the same
+	 * with or without the pool, metadata included.
+	 */
+	public static void setPoolSize(int maxSize) {
+		if (maxSize < 0)
+			throw new IllegalArgumentException();
+
+		if (maxSize == 0)
+			pool = null;
+		else
+			pool = CacheBuilder.newBuilder().maximumSize(maxSize)
+					.weakValues().build();
+	}
+
+	public static long getPoolSize() {
+		Cache<String, DID> pool = DID.pool;
+		return pool == null ? 0 : pool.size();
+	}
+
+	// Always pools a new instance, never the one owned by the caller
+	private static DID intern(Cache<String, DID> pool, String methodSpecificId) {
+		DID pooled = pool.getIfPresent(methodSpecificId);
+		if (pooled != null)
+			return pooled;
+
+		DID did = new DID(METHOD, methodSpecificId);
+		did.pooled = true;
+
+		pooled = pool.asMap().putIfAbsent(methodSpecificId, did);
+		return pooled != null ? pooled : did;
+	}
+
+	protected static DID intern(DID did) {
+		Cache<String, DID> pool = DID.pool;
+		return pool == null || did.pooled ? did :
+				intern(pool, did.methodSpecificId);
+	}
+
+	protected static DID intern(String methodSpecificId) {
+		Cache<String, DID> pool = DID.pool;
+		if (pool == null)
+			return new DID(METHOD, methodSpecificId);
+
+		return intern(pool, methodSpecificId);
+	}
+
+	/*
+	 * Same as new DID(did), but returns the pooled instance if the intern
+	 * pool is enabled.
+	 */
+	protected static DID valueOf(String did) throws MalformedDIDException {
+		if (did == null || did.isEmpty())
+			throw new IllegalArgumentException();
+
+		if (pool == null)
+			return new DID(did);
+
+		String[] parts = ParserHelper.parseSimple(did, true);
+		if (parts != null)
+			return intern(parts[0]);
+
+		return intern(new DID(did));
+	}
+
+	protected boolean isPooled() {
+		return pooled;
 	}
 
 	protected void setMeta(DIDMeta meta) {
+		// Shared instance, keep the metadata to the callers
+		if (pooled)
+			return;
+
 		this.meta = meta;
 	}
 
 	protected DIDMeta getMeta() {
+		if (pooled)
+			return new DIDMeta();
+
 		if (meta == null)
 			meta = new DIDMeta();
 
 		return meta;
 	}
 
+	private void checkMutable() {
+		if (pooled)
+			throw new IllegalStateException("Pooled DID has no metadata.");
+	}
+
 	public void setExtra(String name, String value) throws DIDStoreException {
 		if (name == null || name.isEmpty())
 			throw new IllegalArgumentException();
 
+		checkMutable();
 		getMeta().setExtra(name, value);
 
 		if (getMeta().attachedStore())
@@ -107,6 +216,7 @@ public class DID implements Comparable<DID> {
 	}
 
 	public void setAlias(String alias) throws DIDStoreException {
+		checkMutable();
 		getMeta().setAlias(alias);
 
 		if (getMeta().attachedStore())
@@ -173,7 +283,13 @@ public class DID implements Comparable<DID> {
 
 	@Override
 	public int hashCode() {
-		return METHOD.hashCode() + methodSpecificId.hashCode();
+		int h = hash;
+		if (h == 0) {
+			h = METHOD.hashCode() + methodSpecificId.hashCode();
+			hash = h;
+		}
+
+		return h;
 	}
 
 	@Override
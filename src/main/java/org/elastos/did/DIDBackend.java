@@ -25,16 +25,31 @@ package org.elastos.did;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
-
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elastos.did.backend.AsyncResolver;
 import org.elastos.did.backend.IDChainRequest;
 import org.elastos.did.backend.IDTransactionInfo;
+import org.elastos.did.backend.PersistentCache;
 import org.elastos.did.backend.ResolveResult;
 import org.elastos.did.backend.ResolverCache;
 import org.elastos.did.exception.DIDDeactivatedException;
@@ -46,12 +61,13 @@ import org.elastos.did.exception.InvalidKeyException;
 import org.elastos.did.exception.MalformedResolveResultException;
 import org.elastos.did.exception.NetworkException;
 import org.elastos.did.meta.DIDMeta;
+import org.elastos.did.util.JsonHelper;
 
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 public class DIDBackend {
 	private final static String ID = "id";
@@ -61,11 +77,24 @@ public class DIDBackend {
 	private final static String ERROR_MESSAGE = "message";
 
 	private static final long DEFAULT_TTL = 24 * 60 * 60 * 1000;
-	private static final Charset utf8 = Charset.forName("UTF-8");
+	private static final long DEFAULT_NEGATIVE_TTL = 60 * 1000;
+	private static final JsonFactory jsonFactory = JsonHelper.getJsonFactory();
 	private static DIDResolver resolver;
+	// Set once the resolver node rejected a batch request
+	private static volatile boolean batchRejected;
 
 	private static Random random = new Random();
 	private static long ttl = DEFAULT_TTL; // milliseconds
+	private static long softTtl = DEFAULT_TTL; // milliseconds
+	private static long negativeTtl = DEFAULT_NEGATIVE_TTL; // milliseconds
+	private static Executor refreshExecutor;
+	private static Set<DID> refreshings = ConcurrentHashMap.newKeySet();
+
+	// In-flight backend requests, shared by the concurrent resolves
+	private static ConcurrentHashMap<DID, CompletableFuture<ResolveResult>> pendings =
+			new ConcurrentHashMap<DID, CompletableFuture<ResolveResult>>();
+	private static AtomicLong issuedRequests = new AtomicLong();
+	private static AtomicLong coalescedRequests = new AtomicLong();
 
 	private DIDAdapter adapter;
 
@@ -110,7 +139,7 @@ public class DIDBackend {
 		}
 	}
 
-	static class DefaultResolver implements DIDResolver {
+	static class DefaultResolver implements DIDBatchResolver {
 		private URL url;
 
 		public DefaultResolver(String resolver) throws DIDResolveException {
@@ -124,8 +153,24 @@ public class DIDBackend {
 			}
 		}
 
-		@Override
-		public InputStream resolve(String requestId, String did, boolean all)
+		private interface RequestWriter {
+			void write(JsonGenerator generator) throws IOException;
+		}
+
+		private static void writeRequest(JsonGenerator generator,
+				String requestId, String did, boolean all) throws IOException {
+			generator.writeStartObject();
+			generator.writeStringField("id", requestId);
+			generator.writeStringField("method", "resolvedid");
+			generator.writeFieldName("params");
+			generator.writeStartObject();
+			generator.writeStringField("did", did);
+			generator.writeBooleanField("all", all);
+			generator.writeEndObject();
+			generator.writeEndObject();
+		}
+
+		private InputStream request(RequestWriter writer)
 				throws DIDResolveException {
 			try {
 				HttpURLConnection connection = (HttpURLConnection)url.openConnection();
@@ -138,17 +183,9 @@ public class DIDBackend {
 				connection.connect();
 
 				OutputStream os = connection.getOutputStream();
-				JsonFactory factory = new JsonFactory();
+				JsonFactory factory = JsonHelper.getJsonFactory();
 				JsonGenerator generator = factory.createGenerator(os, JsonEncoding.UTF8);
-				generator.writeStartObject();
-				generator.writeStringField("id", requestId);
-				generator.writeStringField("method", "resolvedid");
-				generator.writeFieldName("params");
-				generator.writeStartObject();
-				generator.writeStringField("did", did);
-				generator.writeBooleanField("all", all);
-				generator.writeEndObject();
-				generator.writeEndObject();
+				writer.write(generator);
 				generator.close();
 				os.close();
 
@@ -161,6 +198,25 @@ public class DIDBackend {
 				throw new NetworkException("Network error.", e);
 			}
 		}
+
+		@Override
+		public InputStream resolve(String requestId, String did, boolean all)
+				throws DIDResolveException {
+			return request((generator) -> {
+				writeRequest(generator, requestId, did, all);
+			});
+		}
+
+		@Override
+		public InputStream resolve(Map<String, String> requests, boolean all)
+				throws DIDResolveException {
+			return request((generator) -> {
+				generator.writeStartArray();
+				for (Map.Entry<String, String> entry : requests.entrySet())
+					writeRequest(generator, entry.getKey(), entry.getValue(), all);
+				generator.writeEndArray();
+			});
+		}
 	}
 
 	private DIDBackend(DIDAdapter adapter) {
@@ -191,11 +247,34 @@ public class DIDBackend {
 		initialize(resolverURL, new File(cacheDir));
 	}
 
+	/*
+	 * Use the keep-alive AsyncResolver with at most maxRequests concurrent
+	 * requests, each one limited by timeout milliseconds.
+	 */
+	public static void initialize(String resolverURL, int maxRequests,
+			int timeout, File cacheDir) throws DIDResolveException {
+		if (resolverURL == null || resolverURL.isEmpty() || cacheDir == null)
+			throw new IllegalArgumentException();
+
+		initialize(new AsyncResolver(resolverURL, maxRequests, timeout),
+				cacheDir);
+	}
+
+	public static void initialize(String resolverURL, int maxRequests,
+			int timeout, String cacheDir) throws DIDResolveException {
+		if (resolverURL == null || resolverURL.isEmpty() ||
+				cacheDir == null || cacheDir.isEmpty())
+			throw new IllegalArgumentException();
+
+		initialize(resolverURL, maxRequests, timeout, new File(cacheDir));
+	}
+
 	public static void initialize(DIDResolver resolver, File cacheDir) {
 		if (resolver == null || cacheDir == null)
 			throw new IllegalArgumentException();
 
 		DIDBackend.resolver = resolver;
+		batchRejected = false;
 		ResolverCache.setCacheDir(cacheDir);
 	}
 
@@ -206,19 +285,113 @@ public class DIDBackend {
 		initialize(resolver, new File(cacheDir));
 	}
 
+	/*
+	 * Use the given persistent tier for the resolver cache, e.g. the
+	 * AppendOnlyCache.
+	 */
+	public static void initialize(DIDResolver resolver, PersistentCache cache) {
+		if (resolver == null || cache == null)
+			throw new IllegalArgumentException();
+
+		DIDBackend.resolver = resolver;
+		batchRejected = false;
+		ResolverCache.setPersistentCache(cache);
+	}
+
+	/*
+	 * Initialize without the cache dir, the resolved results are only
+	 * cached in memory.
+	 */
+	public static void initialize(DIDResolver resolver) {
+		if (resolver == null)
+			throw new IllegalArgumentException();
+
+		DIDBackend.resolver = resolver;
+		batchRejected = false;
+		ResolverCache.setCacheDir(null);
+	}
+
+	public static void initialize(String resolverURL)
+			throws DIDResolveException {
+		if (resolverURL == null || resolverURL.isEmpty())
+			throw new IllegalArgumentException();
+
+		initialize(new DefaultResolver(resolverURL));
+	}
+
+	public static void initialize(String resolverURL, int maxRequests,
+			int timeout) throws DIDResolveException {
+		if (resolverURL == null || resolverURL.isEmpty())
+			throw new IllegalArgumentException();
+
+		initialize(new AsyncResolver(resolverURL, maxRequests, timeout));
+	}
+
 	protected static DIDBackend getInstance(DIDAdapter adapter) {
 		return new DIDBackend(adapter);
 	}
 
+	// Load the hottest count cached results into memory
+	public static int warmUp(int count) throws DIDResolveException {
+		return ResolverCache.warmUp(count, ttl);
+	}
+
 	// Time to live in minutes
 	public static void setTTL(long ttl) {
-		ttl = ttl > 0 ? (ttl * 60 * 1000) : 0;
+		DIDBackend.ttl = ttl > 0 ? (ttl * 60 * 1000) : 0;
+		DIDBackend.softTtl = DIDBackend.ttl;
 	}
 
 	public static long getTTL() {
 		return ttl != 0 ? (ttl / 60 / 1000) : 0;
 	}
 
+	/*
+	 * Time to live in minutes. The cached document older than softTtl is
+	 * still returned, and refreshed in background. After hardTtl the
+	 * caller is blocked by the resolve.
+	 */
+	public static void setTTL(long softTtl, long hardTtl) {
+		if (softTtl < 0 || hardTtl < 0 || softTtl > hardTtl)
+			throw new IllegalArgumentException();
+
+		DIDBackend.ttl = hardTtl * 60 * 1000;
+		DIDBackend.softTtl = softTtl * 60 * 1000;
+	}
+
+	public static long getSoftTTL() {
+		return softTtl != 0 ? (softTtl / 60 / 1000) : 0;
+	}
+
+	/*
+	 * Time to live in seconds for the DIDs resolved as not found,
+	 * 0 to disable the negative cache.
+	 */
+	public static void setNegativeTTL(long ttl) {
+		negativeTtl = ttl > 0 ? (ttl * 1000) : 0;
+	}
+
+	public static long getNegativeTTL() {
+		return negativeTtl / 1000;
+	}
+
+	// Executor for the background refreshes, a daemon thread by default
+	public static void setRefreshExecutor(Executor executor) {
+		refreshExecutor = executor;
+	}
+
+	private static synchronized Executor getRefreshExecutor() {
+		if (refreshExecutor == null) {
+			refreshExecutor = Executors.newSingleThreadExecutor((r) -> {
+				Thread t = new Thread(r, "did-refresh");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+
+		return refreshExecutor;
+	}
+
 	private static String generateRequestId() {
 		StringBuffer sb = new StringBuffer();
 
@@ -228,6 +401,78 @@ public class DIDBackend {
 		return sb.toString();
 	}
 
+	/*
+	 * One JSON-RPC response, the result is parsed in place from the
+	 * response stream, without building an intermediate tree.
+	 */
+	private static class ResolveResponse {
+		private String id;
+		private ResolveResult result;
+		private long errorCode;
+		private String errorMessage;
+	}
+
+	private static ResolveResponse readResponse(JsonParser parser)
+			throws DIDResolveException, IOException {
+		if (parser.getCurrentToken() != JsonToken.START_OBJECT)
+			throw new MalformedResolveResultException("Invalid resolve response.");
+
+		ResolveResponse response = new ResolveResponse();
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+
+			if (name.equals(ID) && token == JsonToken.VALUE_STRING) {
+				response.id = parser.getText();
+			} else if (name.equals(RESULT) && token == JsonToken.START_OBJECT) {
+				response.result = ResolveResult.fromJson(parser);
+			} else if (name.equals(ERROR) && token == JsonToken.START_OBJECT) {
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String field = parser.getCurrentName();
+					parser.nextToken();
+
+					if (field.equals(ERROR_CODE))
+						response.errorCode = parser.getValueAsLong();
+					else if (field.equals(ERROR_MESSAGE))
+						response.errorMessage = parser.getValueAsString();
+					else
+						parser.skipChildren();
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+
+		return response;
+	}
+
+	private static ResolveResult checkResponse(ResolveResponse response,
+			String requestId) throws DIDResolveException {
+		// Check response id, should equals requestId
+		if (response.id == null || !response.id.equals(requestId))
+			throw new MalformedResolveResultException("Mismatched resolve result with request.");
+
+		if (response.result == null)
+			throw new DIDResolveException("Resolve DID error("
+					+ response.errorCode + "): " + response.errorMessage);
+
+		ResolveResult rr = response.result;
+
+		if (rr.getStatus() != ResolveResult.STATUS_NOT_FOUND) {
+			try {
+				ResolverCache.store(rr);
+			} catch (IOException e) {
+				System.out.println("!!! Cache resolved resolved result error: "
+						+ e.getMessage());
+			}
+		} else {
+			ResolverCache.storeNotFound(rr.getDid());
+		}
+
+		return rr;
+	}
+
 	private static ResolveResult resolveFromBackend(DID did)
 			throws DIDResolveException {
 		String requestId = generateRequestId();
@@ -235,56 +480,212 @@ public class DIDBackend {
 		if (resolver == null)
 			throw new DIDResolveException("DID resolver not initialized.");
 
+		issuedRequests.incrementAndGet();
 		InputStream is = resolver.resolve(requestId, did.toString(), false);
 		if (is == null)
 			throw new DIDResolveException("Unknown error.");
 
-		ObjectMapper mapper = new ObjectMapper();
-		JsonNode node = null;
-
-		try {
-			node = mapper.readTree(new InputStreamReader(is, utf8));
+		ResolveResponse response;
+		try (JsonParser parser = jsonFactory.createParser(is)) {
+			parser.nextToken();
+			response = readResponse(parser);
 		} catch (IOException e) {
 			throw new DIDResolveException("Parse resolved json error.", e);
 		}
 
-		// Check response id, should equals requestId
-		JsonNode id = node.get(ID);
-		if (id == null || id.textValue() == null ||
-				!id.textValue().equals(requestId))
-			throw new MalformedResolveResultException("Mismatched resolve result with request.");
+		return checkResponse(response, requestId);
+	}
 
-		JsonNode result = node.get(RESULT);
-		if (result == null || result.isNull()) {
-			JsonNode error = node.get(ERROR);
-			throw new DIDResolveException("Resolve DID error("
-					+ error.get(ERROR_CODE).longValue() + "): "
-					+ error.get(ERROR_MESSAGE).textValue());
+	private static Map<DID, ResolveResult> resolveFromBackend(
+			Collection<DID> dids) throws DIDResolveException {
+		Map<DID, ResolveResult> results =
+				new HashMap<DID, ResolveResult>(dids.size() * 2);
+
+		if (resolver == null)
+			throw new DIDResolveException("DID resolver not initialized.");
+
+		if (!isBatchSupported() || dids.size() == 1) {
+			for (DID did : dids)
+				results.put(did, resolveFromBackend(did));
+
+			return results;
 		}
 
-		ResolveResult rr = ResolveResult.fromJson(result);
+		Map<String, DID> ids = new HashMap<String, DID>(dids.size() * 2);
+		Map<String, String> requests =
+				new LinkedHashMap<String, String>(dids.size() * 2);
+		for (DID did : dids) {
+			String requestId = generateRequestId();
+			while (ids.containsKey(requestId))
+				requestId = generateRequestId();
 
-		if (rr.getStatus() != ResolveResult.STATUS_NOT_FOUND) {
-			try {
-				ResolverCache.store(rr);
+			ids.put(requestId, did);
+			requests.put(requestId, did.toString());
+		}
+
+		issuedRequests.addAndGet(dids.size());
+		List<ResolveResponse> responses = null;
+		boolean rejected = false;
+		InputStream is = ((DIDBatchResolver)resolver).resolve(requests, false);
+		if (is != null) {
+			try (JsonParser parser = jsonFactory.createParser(is)) {
+				JsonToken token = parser.nextToken();
+				if (token == JsonToken.START_ARRAY) {
+					responses = new ArrayList<ResolveResponse>(dids.size());
+					while (parser.nextToken() == JsonToken.START_OBJECT)
+						responses.add(readResponse(parser));
+				} else if (token == JsonToken.START_OBJECT) {
+					// A single error response to the whole batch
+					ResolveResponse response = readResponse(parser);
+					rejected = response.result == null;
+				}
 			} catch (IOException e) {
-				System.out.println("!!! Cache resolved resolved result error: "
-						+ e.getMessage());
+				responses = null;
+				rejected = false;
+			}
+		}
+
+		if (responses == null) {
+			// Only a well-formed error reply tells the node doesn't accept
+			// batches, the failed requests fall back for this call only
+			if (rejected) {
+				System.out.println("!!! Batch resolve rejected by the resolver, "
+						+ "fallback to resolve one by one.");
+				batchRejected = true;
+			} else {
+				System.out.println("!!! Batch resolve failed, "
+						+ "fallback to resolve one by one.");
+			}
+
+			for (DID did : dids)
+				results.put(did, resolveFromBackend(did));
+
+			return results;
+		}
+
+		for (ResolveResponse response : responses) {
+			DID did = ids.get(response.id);
+			if (did == null || response.result == null)
+				continue;
+
+			ids.remove(response.id);
+			results.put(did, checkResponse(response, response.id));
+		}
+
+		// Missing or failed entries are retried one by one
+		for (DID did : ids.values())
+			results.put(did, resolveFromBackend(did));
+
+		return results;
+	}
+
+	/*
+	 * Concurrent callers for the same DID wait for and share the result
+	 * of the request that is already in flight.
+	 */
+	private static ResolveResult resolveFromBackendShared(DID did)
+			throws DIDResolveException {
+		CompletableFuture<ResolveResult> future =
+				new CompletableFuture<ResolveResult>();
+		CompletableFuture<ResolveResult> pending = pendings.putIfAbsent(did, future);
+		if (pending != null) {
+			coalescedRequests.incrementAndGet();
+
+			try {
+				return pending.get();
+			} catch (InterruptedException e) {
+				throw new DIDResolveException("Resolve DID interrupted.", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof DIDResolveException)
+					throw (DIDResolveException)cause;
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException)cause;
+
+				throw new DIDResolveException(cause);
 			}
 		}
 
+		try {
+			ResolveResult rr = resolveFromBackend(did);
+			future.complete(rr);
+			return rr;
+		} catch (DIDResolveException | RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			pendings.remove(did, future);
+		}
+	}
+
+	private static void refresh(DID did) {
+		if (!refreshings.add(did))
+			return;
+
+		try {
+			getRefreshExecutor().execute(() -> {
+				try {
+					resolveFromBackendShared(did);
+				} catch (DIDResolveException | RuntimeException e) {
+					System.out.println("!!! Refresh resolved result error: "
+							+ e.getMessage());
+				} finally {
+					refreshings.remove(did);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			refreshings.remove(did);
+		}
+	}
+
+	private static ResolveResult loadFromCache(DID did)
+			throws DIDResolveException {
+		ResolveResult rr = ResolverCache.load(did, ttl);
+		if (rr != null && softTtl < ttl && ResolverCache.isStale(did, softTtl))
+			refresh(did);
+
 		return rr;
 	}
 
+	// Number of DIDs sent to the resolver backend
+	public static long getIssuedRequests() {
+		return issuedRequests.get();
+	}
+
+	// Number of resolves that shared an in-flight backend request
+	public static long getCoalescedRequests() {
+		return coalescedRequests.get();
+	}
+
+	public static void resetRequestCounters() {
+		issuedRequests.set(0);
+		coalescedRequests.set(0);
+	}
+
+	private static DIDDocument getDocument(ResolveResult rr) {
+		IDTransactionInfo ti = rr.getTransactionInfo(0);
+		DIDDocument doc = ti.getRequest().getDocument();
+		DIDMeta meta = new DIDMeta();
+		meta.setTransactionId(ti.getTransactionId());
+		meta.setSignature(doc.getProof().getSignature());
+		meta.setUpdated(ti.getTimestamp());
+		doc.setMeta(meta);
+		return doc;
+	}
+
 	protected static DIDDocument resolve(DID did, boolean force)
 			throws DIDResolveException {
 
 		ResolveResult rr = null;
-		if (!force)
-			rr = ResolverCache.load(did, ttl);
+		if (!force) {
+			rr = loadFromCache(did);
+			if (rr == null && negativeTtl > 0 &&
+					ResolverCache.isNotFound(did, negativeTtl))
+				return null;
+		}
 
 		if (rr == null)
-			rr = resolveFromBackend(did);
+			rr = resolveFromBackendShared(did);
 
 		switch (rr.getStatus()) {
 		case ResolveResult.STATUS_EXPIRED:
@@ -297,17 +698,64 @@ public class DIDBackend {
 			return null;
 
 		default:
-			IDTransactionInfo ti = rr.getTransactionInfo(0);
-			DIDDocument doc = ti.getRequest().getDocument();
-			DIDMeta meta = new DIDMeta();
-			meta.setTransactionId(ti.getTransactionId());
-			meta.setSignature(doc.getProof().getSignature());
-			meta.setUpdated(ti.getTimestamp());
-			doc.setMeta(meta);
-			return doc;
+			return getDocument(rr);
 		}
 	}
 
+	/*
+	 * Resolve many DIDs at once. The DIDs missing from the cache are sent
+	 * to the resolver in one batch request if the resolver supports it.
+	 * DIDs that are not found, expired or deactivated are mapped to null.
+	 */
+	public static Map<DID, DIDDocument> resolve(Collection<DID> dids,
+			boolean force) throws DIDResolveException {
+		if (dids == null)
+			throw new IllegalArgumentException();
+
+		Map<DID, DIDDocument> docs =
+				new LinkedHashMap<DID, DIDDocument>(dids.size() * 2);
+		Set<DID> missing = new LinkedHashSet<DID>();
+
+		for (DID did : dids) {
+			if (did == null)
+				throw new IllegalArgumentException();
+
+			if (docs.containsKey(did) || missing.contains(did))
+				continue;
+
+			ResolveResult rr = force ? null : loadFromCache(did);
+			if (rr == null && !force && negativeTtl > 0 &&
+					ResolverCache.isNotFound(did, negativeTtl))
+				docs.put(did, null);
+			else if (rr == null)
+				missing.add(did);
+			else
+				docs.put(did, rr.getStatus() == ResolveResult.STATUS_VALID ?
+						getDocument(rr) : null);
+		}
+
+		if (!missing.isEmpty()) {
+			Map<DID, ResolveResult> results = resolveFromBackend(missing);
+			for (DID did : missing) {
+				ResolveResult rr = results.get(did);
+				docs.put(did, rr.getStatus() == ResolveResult.STATUS_VALID ?
+						getDocument(rr) : null);
+			}
+		}
+
+		return docs;
+	}
+
+	public static Map<DID, DIDDocument> resolve(Collection<DID> dids)
+			throws DIDResolveException {
+		return resolve(dids, false);
+	}
+
+	// Check whether the DIDs could be resolved in one batch request
+	protected static boolean isBatchSupported() {
+		return resolver instanceof DIDBatchResolver && !batchRejected;
+	}
+
 	protected static DIDDocument resolve(DID did) throws DIDResolveException {
 		return resolve(did, false);
 	}
@@ -353,7 +801,11 @@ public class DIDBackend {
 			throws DIDTransactionException, DIDStoreException, InvalidKeyException {
 		IDChainRequest request = IDChainRequest.create(doc, signKey, storepass);
 		String json = request.toJson(true);
-		return createTransaction(json, null, confirms);
+		String txid = createTransaction(json, null, confirms);
+
+		// Not a non-existent DID any more
+		ResolverCache.removeNotFound(doc.getSubject());
+		return txid;
 	}
 
 	protected String update(DIDDocument doc, String previousTxid,
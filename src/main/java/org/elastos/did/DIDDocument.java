@@ -29,6 +29,7 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -51,10 +52,13 @@ import org.elastos.did.exception.MalformedDocumentException;
 import org.elastos.did.meta.DIDMeta;
 import org.elastos.did.util.Base58;
 import org.elastos.did.util.Base64;
+import org.elastos.did.util.BatchVerifier;
 import org.elastos.did.util.EcdsaSigner;
 import org.elastos.did.util.HDKey;
 import org.elastos.did.util.JsonHelper;
+import org.elastos.did.util.JsonHelper.ExceptionFactory;
 
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -80,6 +84,8 @@ public class DIDDocument {
 	private final static String DEFAULT_PUBLICKEY_TYPE = Constants.DEFAULT_PUBLICKEY_TYPE;
 	private final static int MAX_VALID_YEARS = Constants.MAX_VALID_YEARS;
 
+	private static final Charset utf8 = Charset.forName("UTF-8");
+
 	private DID subject;
 	private Map<DIDURL, PublicKey> publicKeys;
 	private Map<DIDURL, VerifiableCredential> credentials;
@@ -89,11 +95,16 @@ public class DIDDocument {
 
 	private DIDMeta meta;
 
+	// Memoized signing digest and signature check, reset by the mutators
+	private volatile byte[] digest;
+	private volatile Boolean genuine;
+
 	public static class PublicKey extends DIDObject {
 		private DID controller;
 		private String keyBase58;
 		private boolean authenticationKey;
 		private boolean authorizationKey;
+		private volatile EcdsaSigner.VerificationKey verificationKey;
 
 		protected PublicKey(DIDURL id, String type, DID controller, String keyBase58) {
 			super(id, type);
@@ -105,6 +116,14 @@ public class DIDDocument {
 			this(id, DEFAULT_PUBLICKEY_TYPE, controller, keyBase58);
 		}
 
+		// Copy constructor
+		protected PublicKey(PublicKey pk) {
+			this(pk.getId(), pk.getType(), pk.controller, pk.keyBase58);
+			this.authenticationKey = pk.authenticationKey;
+			this.authorizationKey = pk.authorizationKey;
+			this.verificationKey = pk.verificationKey;
+		}
+
 		public DID getController() {
 			return controller;
 		}
@@ -117,6 +136,17 @@ public class DIDDocument {
 			return Base58.decode(keyBase58);
 		}
 
+		// The decoded key is cached, the key material never changes
+		protected EcdsaSigner.VerificationKey getVerificationKey() {
+			EcdsaSigner.VerificationKey key = verificationKey;
+			if (key == null) {
+				key = EcdsaSigner.decodePublicKey(getPublicKeyBytes());
+				verificationKey = key;
+			}
+
+			return key;
+		}
+
 		public boolean isAuthenticationKey() {
 			return authenticationKey;
 		}
@@ -153,19 +183,19 @@ public class DIDDocument {
 
 		protected static PublicKey fromJson(JsonNode node, DID ref)
 				throws MalformedDocumentException {
-			Class<MalformedDocumentException> clazz = MalformedDocumentException.class;
+			ExceptionFactory<MalformedDocumentException> exceptionFactory = MalformedDocumentException::new;
 
 			DIDURL id = JsonHelper.getDidUrl(node, ID,
-					ref, "publicKey' id", clazz);
+					ref, "publicKey' id", exceptionFactory);
 
 			String type = JsonHelper.getString(node, TYPE, true,
-					DEFAULT_PUBLICKEY_TYPE, "publicKey' type", clazz);
+					DEFAULT_PUBLICKEY_TYPE, "publicKey' type", exceptionFactory);
 
 			DID controller = JsonHelper.getDid(node, CONTROLLER,
-					true, ref, "publicKey' controller", clazz);
+					true, ref, "publicKey' controller", exceptionFactory);
 
 			String keyBase58 = JsonHelper.getString(node, PUBLICKEY_BASE58,
-					false, null, "publicKeyBase58", clazz);
+					false, null, "publicKeyBase58", exceptionFactory);
 
 			return new PublicKey(id, type, controller, keyBase58);
 		}
@@ -218,16 +248,16 @@ public class DIDDocument {
 
 		protected static Service fromJson(JsonNode node, DID ref)
 				throws MalformedDocumentException {
-			Class<MalformedDocumentException> clazz = MalformedDocumentException.class;
+			ExceptionFactory<MalformedDocumentException> exceptionFactory = MalformedDocumentException::new;
 
 			DIDURL id = JsonHelper.getDidUrl(node, ID,
-					ref, "service' id", clazz);
+					ref, "service' id", exceptionFactory);
 
 			String type = JsonHelper.getString(node, TYPE, false,
-					null, "service' type", clazz);
+					null, "service' type", exceptionFactory);
 
 			String endpoint = JsonHelper.getString(node, SERVICE_ENDPOINT,
-					false, null, "service' endpoint", clazz);
+					false, null, "service' endpoint", exceptionFactory);
 
 			return new Service(id, type, endpoint);
 		}
@@ -295,21 +325,21 @@ public class DIDDocument {
 
 		protected static Proof fromJson(JsonNode node, DIDURL refSignKey)
 				throws MalformedDocumentException {
-			Class<MalformedDocumentException> clazz = MalformedDocumentException.class;
+			ExceptionFactory<MalformedDocumentException> exceptionFactory = MalformedDocumentException::new;
 
 			String type = JsonHelper.getString(node, TYPE, true,
-					DEFAULT_PUBLICKEY_TYPE, "document proof type", clazz);
+					DEFAULT_PUBLICKEY_TYPE, "document proof type", exceptionFactory);
 
 			Date created = JsonHelper.getDate(node, CREATED,
-					true, null, "proof created date", clazz);
+					true, null, "proof created date", exceptionFactory);
 
 			DIDURL creator = JsonHelper.getDidUrl(node, CREATOR, true,
-					refSignKey.getDid(), "document proof creator", clazz);
+					refSignKey.getDid(), "document proof creator", exceptionFactory);
 			if (creator == null)
 				creator = refSignKey;
 
 			String signature = JsonHelper.getString(node, SIGNATURE_VALUE,
-					false, null, "document proof signature", clazz);
+					false, null, "document proof signature", exceptionFactory);
 
 			return new Proof(type, created, creator, signature);
 		}
@@ -358,8 +388,12 @@ public class DIDDocument {
 		// Copy constructor
 		this.subject = doc.subject;
 
-		if (doc.publicKeys != null)
-			this.publicKeys = new TreeMap<DIDURL, PublicKey>(doc.publicKeys);
+		// The key flags are mutable, the copy should not change the source
+		if (doc.publicKeys != null) {
+			this.publicKeys = new TreeMap<DIDURL, PublicKey>();
+			for (PublicKey pk : doc.publicKeys.values())
+				this.publicKeys.put(pk.getId(), new PublicKey(pk));
+		}
 
 		if (doc.credentials != null)
 			this.credentials = new TreeMap<DIDURL, VerifiableCredential>(doc.credentials);
@@ -436,6 +470,12 @@ public class DIDDocument {
 
 	private void setSubject(DID subject) {
 		this.subject = subject;
+		invalidate();
+	}
+
+	private void invalidate() {
+		digest = null;
+		genuine = null;
 	}
 
 	public int getPublicKeyCount() {
@@ -541,6 +581,7 @@ public class DIDDocument {
 		}
 
 		publicKeys.put(pk.getId(), pk);
+		invalidate();
 	}
 
 	protected void removePublicKey(DIDURL id, boolean force) {
@@ -560,6 +601,7 @@ public class DIDDocument {
 		}
 
 		removeEntry(publicKeys, id);
+		invalidate();
 		try {
 			if (getMeta().attachedStore())
 				getMeta().getStore().deletePrivateKey(getSubject(), id);
@@ -635,6 +677,7 @@ public class DIDDocument {
 			throw new UnsupportedOperationException("Key cannot used for authentication.");
 
 		key.setAuthenticationKey(true);
+		invalidate();
 	}
 
 	protected void removeAuthenticationKey(DIDURL id) {
@@ -649,6 +692,7 @@ public class DIDDocument {
 					"Cannot remove the default PublicKey from authentication.");
 
 		pk.setAuthenticationKey(false);
+		invalidate();
 	}
 
 	public int getAuthorizationKeyCount() {
@@ -718,6 +762,7 @@ public class DIDDocument {
 			throw new UnsupportedOperationException("Key cannot used for authorization.");
 
 		key.setAuthorizationKey(true);
+		invalidate();
 	}
 
 	protected void removeAuthorizationKey(DIDURL id) {
@@ -727,6 +772,7 @@ public class DIDDocument {
 					+ id + "' not exist.");
 
 		pk.setAuthorizationKey(false);
+		invalidate();
 	}
 
 	public int getCredentialCount() {
@@ -787,10 +833,12 @@ public class DIDDocument {
 		}
 
 		credentials.put(vc.getId(), vc);
+		invalidate();
 	}
 
 	protected void removeCredential(DIDURL id) {
 		removeEntry(credentials, id);
+		invalidate();
 	}
 
 	public int getServiceCount() {
@@ -843,10 +891,12 @@ public class DIDDocument {
 		}
 
 		services.put(svc.getId(), svc);
+		invalidate();
 	}
 
 	protected void removeService(DIDURL id) {
 		removeEntry(services, id);
+		invalidate();
 	}
 
 	public Date getExpires() {
@@ -855,6 +905,7 @@ public class DIDDocument {
 
 	protected void setExpires(Date expires) {
 		this.expires = expires;
+		invalidate();
 	}
 
 	public Proof getProof() {
@@ -863,6 +914,7 @@ public class DIDDocument {
 
 	private void setProof(Proof proof) {
 		this.proof = proof;
+		genuine = null;
 	}
 
 	protected void setMeta(DIDMeta meta) {
@@ -926,6 +978,16 @@ public class DIDDocument {
 	}
 
 	public boolean isGenuine() {
+		Boolean result = genuine;
+		if (result == null) {
+			result = checkGenuine();
+			genuine = result;
+		}
+
+		return result;
+	}
+
+	private boolean checkGenuine() {
 		// Document should signed(only) by default public key.
 		if (!proof.getCreator().equals(getDefaultPublicKey()))
 			return false;
@@ -934,8 +996,53 @@ public class DIDDocument {
 		if (!proof.getType().equals(DEFAULT_PUBLICKEY_TYPE))
 			return false;
 
-		String json = toJson(true, true);
-		return verify(proof.getCreator(), proof.getSignature(), json.getBytes());
+		return verifyDigest(proof.getCreator(), proof.getSignature(), getDigest());
+	}
+
+	/*
+	 * Add the signature check to the batch, the result is memoized when the
+	 * batch is verified. Returns the known result, or null if pending.
+	 */
+	protected Boolean checkGenuine(BatchVerifier verifier) {
+		Boolean result = genuine;
+		if (result != null)
+			return result;
+
+		if (!proof.getCreator().equals(getDefaultPublicKey()))
+			return false;
+
+		if (!proof.getType().equals(DEFAULT_PUBLICKEY_TYPE))
+			return false;
+
+		verifier.add(getPublicKey(proof.getCreator()).getVerificationKey(),
+				decodeSignature(proof.getSignature()), getDigest(),
+				(valid) -> genuine = valid);
+		return null;
+	}
+
+	/*
+	 * SHA-256 digest of the normalized document without the proof, the
+	 * UTF-8 JSON is streamed into the digest without intermediate copies.
+	 */
+	private byte[] getDigest() {
+		byte[] result = digest;
+		if (result != null)
+			return result;
+
+		EcdsaSigner.DigestStream out = new EcdsaSigner.DigestStream();
+
+		try {
+			JsonGenerator generator = JsonHelper.getJsonFactory()
+					.createGenerator(out, JsonEncoding.UTF8);
+			toJson(generator, true, true);
+			generator.close();
+		} catch (IOException ignore) {
+			// DigestStream never throws
+		}
+
+		result = out.digest();
+		digest = result;
+		return result;
 	}
 
 	public boolean isValid() {
@@ -969,6 +1076,30 @@ public class DIDDocument {
 		return sign(new DIDURL(getSubject(), id), storepass, data);
 	}
 
+	public List<String> signAll(DIDURL id, String storepass,
+			List<byte[][]> data, boolean parallel) throws DIDStoreException {
+		if (id == null || data == null ||
+				storepass == null || storepass.isEmpty())
+			throw new IllegalArgumentException();
+
+		if (!getMeta().attachedStore())
+			throw new DIDStoreException("Not attached with DID store.");
+
+		return getMeta().getStore().signAll(getSubject(), id, storepass,
+				data, parallel);
+	}
+
+	public List<String> signAll(String storepass, List<byte[][]> data,
+			boolean parallel) throws DIDStoreException {
+		DIDURL key = getDefaultPublicKey();
+		return signAll(key, storepass, data, parallel);
+	}
+
+	public List<String> signAll(String storepass, List<byte[][]> data)
+			throws DIDStoreException {
+		return signAll(storepass, data, false);
+	}
+
 	public boolean verify(String signature, byte[] ... data) {
 		DIDURL key = getDefaultPublicKey();
 		return verify(key, signature, data);
@@ -983,18 +1114,31 @@ public class DIDDocument {
 			throw new IllegalArgumentException();
 
 		PublicKey pk = getPublicKey(id);
-		byte[] binkey = pk.getPublicKeyBytes();
 		byte[] sig = Base64.decode(signature,
 				Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
 
-		return EcdsaSigner.verify(binkey, sig, data);
+		return EcdsaSigner.verify(pk.getVerificationKey(), sig, data);
+	}
+
+	protected boolean verifyDigest(DIDURL id, String signature, byte[] digest) {
+		if (id == null || signature == null || signature.isEmpty() || digest == null)
+			throw new IllegalArgumentException();
+
+		PublicKey pk = getPublicKey(id);
+		return EcdsaSigner.verifyDigest(pk.getVerificationKey(),
+				decodeSignature(signature), digest);
+	}
+
+	protected static byte[] decodeSignature(String signature) {
+		return Base64.decode(signature,
+				Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
 	}
 
 	private void parse(JsonNode doc) throws MalformedDocumentException {
-		Class<MalformedDocumentException> clazz = MalformedDocumentException.class;
+		ExceptionFactory<MalformedDocumentException> exceptionFactory = MalformedDocumentException::new;
 
 		setSubject(JsonHelper.getDid(doc, ID,
-				false, null, "subject", clazz));
+				false, null, "subject", exceptionFactory));
 
 		JsonNode node = doc.get(PUBLICKEY);
 		if (node == null)
@@ -1025,7 +1169,7 @@ public class DIDDocument {
 		if (node != null)
 			parseService(node);
 
-		expires = JsonHelper.getDate(doc, EXPIRES, true, null, "expires", clazz);
+		expires = JsonHelper.getDate(doc, EXPIRES, true, null, "expires", exceptionFactory);
 
 		node = doc.get(PROOF);
 		if (node == null)
@@ -1068,7 +1212,7 @@ public class DIDDocument {
 			} else {
 				DIDURL id = JsonHelper.getDidUrl(keyNode, getSubject(),
 						"authentication publicKey id",
-						MalformedDocumentException.class);
+						MalformedDocumentException::new);
 
 				pk = publicKeys.get(id);
 				if (pk == null) {
@@ -1100,7 +1244,7 @@ public class DIDDocument {
 			} else {
 				DIDURL id = JsonHelper.getDidUrl(keyNode, getSubject(),
 						"authorization publicKey id",
-						MalformedDocumentException.class);
+						MalformedDocumentException::new);
 
 				pk = publicKeys.get(id);
 				if (pk == null) {
@@ -1154,7 +1298,7 @@ public class DIDDocument {
 			throw new IllegalArgumentException();
 
 		DIDDocument doc = new DIDDocument();
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode node = mapper.readTree(reader);
 			doc.parse(node);
@@ -1171,7 +1315,7 @@ public class DIDDocument {
 			throw new IllegalArgumentException();
 
 		DIDDocument doc = new DIDDocument();
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode node = mapper.readTree(in);
 			doc.parse(node);
@@ -1182,13 +1326,30 @@ public class DIDDocument {
 		return doc;
 	}
 
+	public static DIDDocument fromJson(byte[] json)
+			throws MalformedDocumentException {
+		if (json == null || json.length == 0)
+			throw new IllegalArgumentException();
+
+		DIDDocument doc = new DIDDocument();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
+		try {
+			JsonNode node = mapper.readTree(json);
+			doc.parse(node);
+		} catch (IOException e) {
+			throw new MalformedDocumentException("Parse JSON document error.", e);
+		}
+
+		return doc;
+	}
+
 	public static DIDDocument fromJson(String json)
 			throws MalformedDocumentException {
 		if (json == null || json.isEmpty())
 			throw new IllegalArgumentException();
 
 		DIDDocument doc = new DIDDocument();
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode node = mapper.readTree(json);
 			doc.parse(node);
@@ -1327,7 +1488,7 @@ public class DIDDocument {
 
 	private void toJson(Writer out, boolean normalized, boolean forSign)
 			throws IOException {
-		JsonFactory factory = new JsonFactory();
+		JsonFactory factory = JsonHelper.getJsonFactory();
 		JsonGenerator generator = factory.createGenerator(out);
 		toJson(generator, normalized, forSign);
 		generator.close();
@@ -1960,7 +2121,7 @@ public class DIDDocument {
 
 			DIDURL signKey = document.getDefaultPublicKey();
 			String json = document.toJson(true, true);
-			String sig = document.sign(signKey, storepass, json.getBytes());
+			String sig = document.sign(signKey, storepass, json.getBytes(utf8));
 			Proof proof = new Proof(signKey, sig);
 			document.setProof(proof);
 
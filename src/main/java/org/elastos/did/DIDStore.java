@@ -31,6 +31,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
@@ -39,8 +43,18 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -66,6 +80,7 @@ import org.elastos.did.util.Base64;
 import org.elastos.did.util.EcdsaSigner;
 import org.elastos.did.util.HDKey;
 import org.elastos.did.util.JsonHelper;
+import org.elastos.did.util.JsonHelper.ExceptionFactory;
 import org.elastos.did.util.LRUCache;
 import org.spongycastle.crypto.CryptoException;
 import org.spongycastle.crypto.digests.SHA256Digest;
@@ -74,7 +89,7 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 public final class DIDStore {
 	private static final int CACHE_INITIAL_CAPACITY = 16;
@@ -86,12 +101,147 @@ public final class DIDStore {
 
 	private static final String DID_EXPORT = "did.elastos.export/1.0";
 
+	public static final long DEFAULT_UNLOCK_TIMEOUT = 5 * 60 * 1000; // milliseconds
+
+	private static final Charset utf8 = Charset.forName("UTF-8");
+	private static final SecureRandom random = new SecureRandom();
+	// The imported streams belong to the callers, leave them open
+	private static final ObjectReader streamReader = JsonHelper.getObjectMapper()
+			.reader().without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+	private static ScheduledThreadPoolExecutor sessionTimer;
+
+	private static final int SIGNING_PARALLELISM =
+			Runtime.getRuntime().availableProcessors();
+	private static ForkJoinPool signingPool;
+
 	private Map<DID, DIDDocument> didCache;
 	private Map<DIDURL, VerifiableCredential> vcCache;
 
 	private DIDStorage storage;
 	private DIDBackend backend;
 
+	private volatile Session session;
+	private volatile boolean deterministicSigning;
+
+	/*
+	 * Decrypted private keys of an unlocked store. The keys are decrypted
+	 * on the first use and wiped when the session ends. Only the salted
+	 * hash of the store password is kept.
+	 */
+	private static class Session {
+		private byte[] salt;
+		private byte[] passwordHash;
+		private long idleTimeout;
+		private int maxUses;
+
+		private Map<DIDURL, byte[]> keys;
+		private ReadWriteLock lock;
+		private AtomicInteger uses;
+		private volatile long lastUsed;
+		private volatile boolean closed;
+
+		private Session(String storepass, long idleTimeout, int maxUses) {
+			this.salt = new byte[16];
+			random.nextBytes(salt);
+			this.passwordHash = hash(storepass);
+			this.idleTimeout = idleTimeout;
+			this.maxUses = maxUses;
+
+			this.keys = new ConcurrentHashMap<DIDURL, byte[]>();
+			this.lock = new ReentrantReadWriteLock();
+			this.uses = new AtomicInteger();
+			this.lastUsed = System.currentTimeMillis();
+		}
+
+		private byte[] hash(String storepass) {
+			SHA256Digest sha256 = new SHA256Digest();
+			sha256.update(salt, 0, salt.length);
+			byte[] bytes = storepass.getBytes(utf8);
+			sha256.update(bytes, 0, bytes.length);
+
+			byte[] digest = new byte[32];
+			sha256.doFinal(digest, 0);
+			return digest;
+		}
+
+		private boolean isIdle() {
+			return idleTimeout > 0 &&
+					System.currentTimeMillis() - lastUsed > idleTimeout;
+		}
+
+		private boolean isActive() {
+			return !closed && !isIdle() &&
+					(maxUses == 0 || uses.get() < maxUses);
+		}
+
+		/*
+		 * Acquire the session for count signatures, on success the caller
+		 * should release() the session after use.
+		 */
+		private boolean acquire(String storepass, int count) {
+			lock.readLock().lock();
+
+			if (isActive() && MessageDigest.isEqual(passwordHash, hash(storepass)) &&
+					reserve(count)) {
+				lastUsed = System.currentTimeMillis();
+				return true;
+			}
+
+			lock.readLock().unlock();
+			return false;
+		}
+
+		// Take count uses only if all of them fit in the remaining ones
+		private boolean reserve(int count) {
+			if (maxUses == 0)
+				return true;
+
+			while (true) {
+				int used = uses.get();
+				if ((long)used + count > maxUses)
+					return false;
+
+				if (uses.compareAndSet(used, used + count))
+					return true;
+			}
+		}
+
+		private void release() {
+			lock.readLock().unlock();
+		}
+
+		private void remove(DIDURL id) {
+			lock.writeLock().lock();
+			try {
+				byte[] key = keys.remove(id);
+				if (key != null)
+					Arrays.fill(key, (byte)0);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		private void remove(DID did) {
+			for (DIDURL id : keys.keySet()) {
+				if (id.getDid().equals(did))
+					remove(id);
+			}
+		}
+
+		private void close() {
+			lock.writeLock().lock();
+			try {
+				closed = true;
+				for (byte[] key : keys.values())
+					Arrays.fill(key, (byte)0);
+				keys.clear();
+				Arrays.fill(passwordHash, (byte)0);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
 	public interface ConflictHandle {
 		DIDDocument merge(DIDDocument chainCopy, DIDDocument localCopy);
 	}
@@ -132,11 +282,11 @@ public final class DIDStore {
 		return storage.containsPrivateIdentity();
 	}
 
-	protected static String encryptToBase64(byte[] input, String passwd)
-			throws DIDStoreException {
+	protected static String encryptToBase64(byte[] input,
+			Aes256cbc.Context context) throws DIDStoreException {
 		byte[] cipher;
 		try {
-			cipher = Aes256cbc.encrypt(input, passwd);
+			cipher = context.encrypt(input);
 		} catch (CryptoException e) {
 			throw new DIDStoreException("Encrypt data error.", e);
 		}
@@ -145,17 +295,37 @@ public final class DIDStore {
 				Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
 	}
 
-	protected static byte[] decryptFromBase64(String input, String storepass)
+	protected static String encryptToBase64(byte[] input, String passwd)
 			throws DIDStoreException {
+		Aes256cbc.Context context = new Aes256cbc.Context(passwd);
+		try {
+			return encryptToBase64(input, context);
+		} finally {
+			context.destroy();
+		}
+	}
+
+	protected static byte[] decryptFromBase64(String input,
+			Aes256cbc.Context context) throws DIDStoreException {
 		byte[] cipher = Base64.decode(input,
 				Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
 		try {
-			return Aes256cbc.decrypt(cipher, storepass);
+			return context.decrypt(cipher);
 		} catch (CryptoException e) {
 			throw new WrongPasswordException("Decrypt private key error.", e);
 		}
 	}
 
+	protected static byte[] decryptFromBase64(String input, String storepass)
+			throws DIDStoreException {
+		Aes256cbc.Context context = new Aes256cbc.Context(storepass);
+		try {
+			return decryptFromBase64(input, context);
+		} finally {
+			context.destroy();
+		}
+	}
+
 	// Initialize & create new private identity and save it to DIDStore.
 	public void initPrivateIdentity(String language, String mnemonic,
 			String passphrase, String storepass, boolean force)
@@ -274,6 +444,8 @@ public final class DIDStore {
 		if (privateIdentity == null)
 			throw new DIDStoreException("DID Store does not contains private identity.");
 
+		// Derive the store key once for all the synchronized keys
+		Aes256cbc.Context context = new Aes256cbc.Context(storepass);
 		try {
 			int blanks = 0;
 			int i = 0;
@@ -308,7 +480,7 @@ public final class DIDStore {
 
 						// Save private key
 						storePrivateKey(did, finalCopy.getDefaultPublicKey(),
-								key.serialize(), storepass);
+								key.serialize(), context);
 
 						storeDid(finalCopy);
 
@@ -325,6 +497,7 @@ public final class DIDStore {
 				}
 			}
 		} finally {
+			context.destroy();
 			privateIdentity.wipe();
 		}
 	}
@@ -1070,6 +1243,7 @@ public final class DIDStore {
 			throw new IllegalArgumentException();
 
 		didCache.remove(did);
+		removeSessionKeys(did);
 		return storage.deleteDid(did);
 	}
 
@@ -1351,6 +1525,14 @@ public final class DIDStore {
 
 		String encryptedKey = encryptToBase64(privateKey, storepass);
 		storage.storePrivateKey(did, id, encryptedKey);
+		removeSessionKey(id);
+	}
+
+	private void storePrivateKey(DID did, DIDURL id, byte[] privateKey,
+			Aes256cbc.Context context) throws DIDStoreException {
+		String encryptedKey = encryptToBase64(privateKey, context);
+		storage.storePrivateKey(did, id, encryptedKey);
+		removeSessionKey(id);
 	}
 
 	public void storePrivateKey(String did, String id, byte[] privateKey,
@@ -1416,6 +1598,7 @@ public final class DIDStore {
 		if (did == null || id == null)
 			throw new IllegalArgumentException();
 
+		removeSessionKey(id);
 		return storage.deletePrivateKey(did, id);
 	}
 
@@ -1433,11 +1616,226 @@ public final class DIDStore {
 		return deletePrivateKey(_did, _id);
 	}
 
-	public String sign(DID did, DIDURL id, String storepass, byte[] ... data)
+	private static synchronized ScheduledThreadPoolExecutor getSessionTimer() {
+		if (sessionTimer == null) {
+			sessionTimer = new ScheduledThreadPoolExecutor(1, (r) -> {
+				Thread t = new Thread(r, "did-store-session");
+				t.setDaemon(true);
+				return t;
+			});
+			sessionTimer.setRemoveOnCancelPolicy(true);
+		}
+
+		return sessionTimer;
+	}
+
+	// Wipe the keys once the session is idle, even if it is not used again
+	private void scheduleExpiry(Session session) {
+		long delay = session.lastUsed + session.idleTimeout -
+				System.currentTimeMillis();
+
+		getSessionTimer().schedule(() -> {
+			if (session.closed)
+				return;
+
+			if (session.isIdle())
+				closeSession(session);
+			else
+				scheduleExpiry(session);
+		}, Math.max(delay, 0) + 1, TimeUnit.MILLISECONDS);
+	}
+
+	private void closeSession(Session session) {
+		session.close();
+
+		synchronized (this) {
+			if (this.session == session)
+				this.session = null;
+		}
+	}
+
+	/*
+	 * Unlock the store for signing. The private keys are decrypted once
+	 * and kept in memory until the session is idle for idleTimeout
+	 * milliseconds (0 for no timeout), used for maxUses signatures (0 for
+	 * unlimited), or lock() is called. The signing methods only use the
+	 * session when called with the same storepass.
+	 */
+	public void unlock(String storepass, long idleTimeout, int maxUses)
 			throws DIDStoreException {
+		if (storepass == null || storepass.isEmpty() ||
+				idleTimeout < 0 || maxUses < 0)
+			throw new IllegalArgumentException();
+
+		// Check the password
+		if (containsPrivateIdentity()) {
+			byte[] data = decryptFromBase64(storage.loadPrivateIdentity(),
+					storepass);
+			Arrays.fill(data, (byte)0);
+		}
+
+		Session session = new Session(storepass, idleTimeout, maxUses);
+		Session old;
+		synchronized (this) {
+			old = this.session;
+			this.session = session;
+		}
+
+		if (old != null)
+			old.close();
+
+		if (idleTimeout > 0)
+			scheduleExpiry(session);
+	}
+
+	public void unlock(String storepass) throws DIDStoreException {
+		unlock(storepass, DEFAULT_UNLOCK_TIMEOUT, 0);
+	}
+
+	// End the unlock session and wipe the decrypted keys
+	public void lock() {
+		Session session = this.session;
+		if (session != null)
+			closeSession(session);
+	}
+
+	public boolean isUnlocked() {
+		Session session = this.session;
+		return session != null && session.isActive();
+	}
+
+	/*
+	 * Sign with the deterministic nonces of RFC 6979 instead of the random
+	 * nonces, for this store only. Both kinds of signatures are verified
+	 * the same way.
+	 */
+	public void setDeterministicSigning(boolean deterministic) {
+		this.deterministicSigning = deterministic;
+	}
+
+	public boolean isDeterministicSigning() {
+		return deterministicSigning;
+	}
+
+	private void removeSessionKey(DIDURL id) {
+		Session session = this.session;
+		if (session != null)
+			session.remove(id);
+	}
+
+	private void removeSessionKeys(DID did) {
+		Session session = this.session;
+		if (session != null)
+			session.remove(did);
+	}
+
+	private byte[] loadSigningKey(DID did, DIDURL id, String storepass)
+			throws DIDStoreException {
+		byte[] binKey = decryptFromBase64(loadPrivateKey(did, id), storepass);
+		HDKey.DerivedKey key = HDKey.DerivedKey.deserialize(binKey);
+		byte[] privateKey = key.getPrivateKeyBytes();
+
+		key.wipe();
+		Arrays.fill(binKey, (byte)0);
+
+		return privateKey;
+	}
+
+	private interface KeyOperation<T> {
+		T apply(byte[] privateKey) throws DIDStoreException;
+	}
+
+	/*
+	 * Run the operation with the private key for count signatures. The key
+	 * comes from the unlock session if possible, otherwise it is decrypted
+	 * from the storage and wiped after the operation.
+	 */
+	private <T> T withSigningKey(DID did, DIDURL id, String storepass,
+			int count, KeyOperation<T> op) throws DIDStoreException {
+		Session session = this.session;
+		if (session != null && id.getDid().equals(did)) {
+			if (session.acquire(storepass, count)) {
+				try {
+					byte[] key = session.keys.get(id);
+					if (key == null) {
+						key = loadSigningKey(did, id, storepass);
+						byte[] exists = session.keys.putIfAbsent(id, key);
+						if (exists != null) {
+							Arrays.fill(key, (byte)0);
+							key = exists;
+						}
+					}
+
+					return op.apply(key);
+				} finally {
+					session.release();
+				}
+			} else if (!session.isActive()) {
+				closeSession(session);
+			}
+		}
+
+		byte[] key = loadSigningKey(did, id, storepass);
+		try {
+			return op.apply(key);
+		} finally {
+			Arrays.fill(key, (byte)0);
+		}
+	}
+
+	private static synchronized ForkJoinPool getSigningPool() {
+		if (signingPool == null)
+			signingPool = new ForkJoinPool(SIGNING_PARALLELISM);
+
+		return signingPool;
+	}
+
+	private static List<byte[]> signAll(byte[] privateKey, List<byte[][]> data,
+			boolean parallel, boolean deterministic) throws DIDStoreException {
+		int chunks = parallel ? Math.min(SIGNING_PARALLELISM, data.size()) : 1;
+		if (chunks <= 1)
+			return EcdsaSigner.signAll(privateKey, data, deterministic);
+
+		// Each chunk has its own signer, the results keep the input order
+		int step = (data.size() + chunks - 1) / chunks;
+		List<Callable<List<byte[]>>> tasks = new ArrayList<Callable<List<byte[]>>>(chunks);
+		for (int start = 0; start < data.size(); start += step) {
+			List<byte[][]> chunk = data.subList(start,
+					Math.min(start + step, data.size()));
+			tasks.add(() -> EcdsaSigner.signAll(privateKey, chunk, deterministic));
+		}
+
+		List<byte[]> sigs = new ArrayList<byte[]>(data.size());
+		try {
+			for (Future<List<byte[]>> future : getSigningPool().invokeAll(tasks))
+				sigs.addAll(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DIDStoreException("Batch signing interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new DIDStoreException("Batch signing error.", e.getCause());
+		}
+
+		return sigs;
+	}
+
+	/*
+	 * Sign all the payloads with the same key, the private key is only
+	 * decrypted once. Each payload is an array of the data parts that are
+	 * signed together, same as the data of sign(). The signatures are
+	 * returned in the payload order. If parallel, the payloads are signed
+	 * on a shared pool bounded by the number of the processors.
+	 */
+	public List<String> signAll(DID did, DIDURL id, String storepass,
+			List<byte[][]> data, boolean parallel) throws DIDStoreException {
 		if (did == null || storepass == null || storepass.isEmpty() || data == null)
 			throw new IllegalArgumentException();
 
+		for (byte[][] payload : data) {
+			if (payload == null)
+				throw new IllegalArgumentException();
+		}
+
 		if (id == null) {
 			DIDDocument doc = loadDid(did);
 			if (doc == null)
@@ -1446,13 +1844,42 @@ public final class DIDStore {
 			id = doc.getDefaultPublicKey();
 		}
 
-		byte[] binKey = decryptFromBase64(loadPrivateKey(did, id), storepass);
-		HDKey.DerivedKey key = HDKey.DerivedKey.deserialize(binKey);
+		if (data.isEmpty())
+			return new ArrayList<String>();
 
-		byte[] sig = EcdsaSigner.sign(key.getPrivateKeyBytes(), data);
+		boolean deterministic = deterministicSigning;
+		List<byte[]> sigs = withSigningKey(did, id, storepass, data.size(),
+				(key) -> signAll(key, data, parallel, deterministic));
 
-		key.wipe();
-		Arrays.fill(binKey, (byte)0);
+		List<String> results = new ArrayList<String>(sigs.size());
+		for (byte[] sig : sigs)
+			results.add(Base64.encodeToString(sig,
+					Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP));
+
+		return results;
+	}
+
+	public List<String> signAll(DID did, DIDURL id, String storepass,
+			List<byte[][]> data) throws DIDStoreException {
+		return signAll(did, id, storepass, data, false);
+	}
+
+	public String sign(DID did, DIDURL id, String storepass, byte[] ... data)
+			throws DIDStoreException {
+		if (did == null || storepass == null || storepass.isEmpty() || data == null)
+			throw new IllegalArgumentException();
+
+		if (id == null) {
+			DIDDocument doc = loadDid(did);
+			if (doc == null)
+				throw new DIDStoreException("Can not resolve DID document.");
+
+			id = doc.getDefaultPublicKey();
+		}
+
+		boolean deterministic = deterministicSigning;
+		byte[] sig = withSigningKey(did, id, storepass, 1,
+				(key) -> EcdsaSigner.sign(key, deterministic, data));
 
 		return Base64.encodeToString(sig,
 				Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
@@ -1465,22 +1892,46 @@ public final class DIDStore {
 
 	public void changePassword(String oldPassword, String newPassword)
 			throws DIDStoreException {
+		// Derive both keys once for all the private keys
+		Aes256cbc.Context oldContext = new Aes256cbc.Context(oldPassword);
+		Aes256cbc.Context newContext = new Aes256cbc.Context(newPassword);
+
 		ReEncryptor ree = new ReEncryptor() {
 			@Override
 			public String reEncrypt(String data) throws DIDStoreException {
-				byte[] secret = DIDStore.decryptFromBase64(data, oldPassword);
-				String result = DIDStore.encryptToBase64(secret, newPassword);
+				byte[] secret = DIDStore.decryptFromBase64(data, oldContext);
+				String result = DIDStore.encryptToBase64(secret, newContext);
 				Arrays.fill(secret, (byte)0);
 
 				return result;
 			}
 		};
 
-		storage.changePassword(ree);
+		// The unlocked keys belong to the old password
+		lock();
+		try {
+			storage.changePassword(ree);
+		} finally {
+			oldContext.destroy();
+			newContext.destroy();
+		}
 	}
 
 	private void exportDid(DID did, JsonGenerator generator, String password,
 			String storepass) throws DIDStoreException, IOException {
+		Aes256cbc.Context exportContext = new Aes256cbc.Context(password);
+		Aes256cbc.Context storeContext = new Aes256cbc.Context(storepass);
+		try {
+			exportDid(did, generator, password, exportContext, storeContext);
+		} finally {
+			exportContext.destroy();
+			storeContext.destroy();
+		}
+	}
+
+	private void exportDid(DID did, JsonGenerator generator, String password,
+			Aes256cbc.Context exportContext, Aes256cbc.Context storeContext)
+			throws DIDStoreException, IOException {
 		// All objects should load directly from storage,
 		// avoid affects the cached objects.
 
@@ -1560,8 +2011,8 @@ public final class DIDStore {
 
 				if (storage.containsPrivateKey(did, id)) {
 					String csk = storage.loadPrivateKey(did, id);
-					byte[] sk = decryptFromBase64(csk, storepass);
-					csk = encryptToBase64(sk, password);
+					byte[] sk = decryptFromBase64(csk, storeContext);
+					csk = encryptToBase64(sk, exportContext);
 					Arrays.fill(sk, (byte)0);
 
 					generator.writeStartObject();
@@ -1636,7 +2087,7 @@ public final class DIDStore {
 				password.isEmpty() || storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		JsonFactory factory = new JsonFactory();
+		JsonFactory factory = JsonHelper.getJsonFactory();
 		JsonGenerator generator = factory.createGenerator(out);
 		generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 		exportDid(did, generator, password, storepass);
@@ -1661,7 +2112,7 @@ public final class DIDStore {
 				password.isEmpty() || storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		JsonFactory factory = new JsonFactory();
+		JsonFactory factory = JsonHelper.getJsonFactory();
 		JsonGenerator generator = factory.createGenerator(out);
 		generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 		exportDid(did, generator, password, storepass);
@@ -1724,7 +2175,20 @@ public final class DIDStore {
 
 	private void importDid(JsonNode root, String password, String storepass)
 			throws DIDStoreException, IOException {
-		Class<DIDStoreException> exceptionClass = DIDStoreException.class;
+		Aes256cbc.Context exportContext = new Aes256cbc.Context(password);
+		Aes256cbc.Context storeContext = new Aes256cbc.Context(storepass);
+		try {
+			importDid(root, password, exportContext, storeContext);
+		} finally {
+			exportContext.destroy();
+			storeContext.destroy();
+		}
+	}
+
+	private void importDid(JsonNode root, String password,
+			Aes256cbc.Context exportContext, Aes256cbc.Context storeContext)
+			throws DIDStoreException, IOException {
+		ExceptionFactory<DIDStoreException> exceptionFactory = DIDStoreException::new;
 
 		SHA256Digest sha256 = new SHA256Digest();
 		byte[] bytes = password.getBytes();
@@ -1732,7 +2196,7 @@ public final class DIDStore {
 
 		// Type
 		String type = JsonHelper.getString(root, "type", false, null,
-				"export type", exceptionClass);
+				"export type", exceptionFactory);
 		if (!type.equals(DID_EXPORT))
 			throw new DIDStoreException("Invalid export data, unknown type.");
 		bytes = type.getBytes();
@@ -1740,13 +2204,13 @@ public final class DIDStore {
 
 		// DID
 		DID did = JsonHelper.getDid(root, "id", false, null,
-				"DID subject", exceptionClass);
+				"DID subject", exceptionFactory);
 		bytes = did.toString().getBytes();
 		sha256.update(bytes, 0, bytes.length);
 
 		// Created
 		Date created = JsonHelper.getDate(root, "created", true, null,
-				"export date", exceptionClass);
+				"export date", exceptionFactory);
 		bytes = JsonHelper.formatDate(created).getBytes();
 		sha256.update(bytes, 0, bytes.length);
 
@@ -1808,9 +2272,9 @@ public final class DIDStore {
 
 			for (int i = 0; i < node.size(); i++) {
 				DIDURL id = JsonHelper.getDidUrl(node.get(i), "id", did,
-						"privatekey id", exceptionClass);
+						"privatekey id", exceptionFactory);
 				String csk = JsonHelper.getString(node.get(i), "key", false, null,
-						"privatekey", exceptionClass);
+						"privatekey", exceptionFactory);
 
 				bytes = id.toString().getBytes();
 				sha256.update(bytes, 0, bytes.length);
@@ -1818,8 +2282,8 @@ public final class DIDStore {
 				bytes = csk.getBytes();
 				sha256.update(bytes, 0, bytes.length);
 
-				byte[] sk = decryptFromBase64(csk, password);
-				csk = encryptToBase64(sk, storepass);
+				byte[] sk = decryptFromBase64(csk, exportContext);
+				csk = encryptToBase64(sk, storeContext);
 				Arrays.fill(sk, (byte)0);
 
 				sks.put(id, csk);
@@ -1847,7 +2311,7 @@ public final class DIDStore {
 					JsonNode n = metaNode.get(i);
 
 					DIDURL id = JsonHelper.getDidUrl(n, "id", false, null,
-							"credential id", exceptionClass);
+							"credential id", exceptionFactory);
 
 					bytes = id.toString().getBytes();
 					sha256.update(bytes, 0, bytes.length);
@@ -1886,14 +2350,27 @@ public final class DIDStore {
 		storage.storeDid(doc);
 		storage.storeDidMeta(doc.getSubject(), doc.getMeta());
 
-		for (VerifiableCredential vc : vcs.values()) {
-			storage.storeCredential(vc);
-			storage.storeCredentialMeta(did, vc.getId(), vc.getMeta());
+		if (didCache != null)
+			didCache.remove(did);
+
+		if (vcs != null) {
+			for (VerifiableCredential vc : vcs.values()) {
+				storage.storeCredential(vc);
+				storage.storeCredentialMeta(did, vc.getId(), vc.getMeta());
+
+				if (vcCache != null)
+					vcCache.remove(vc.getId());
+			}
 		}
 
-		for (Map.Entry<DIDURL, String> sk : sks.entrySet()) {
-			storage.storePrivateKey(did, sk.getKey(), sk.getValue());
+		if (sks != null) {
+			for (Map.Entry<DIDURL, String> sk : sks.entrySet()) {
+				storage.storePrivateKey(did, sk.getKey(), sk.getValue());
+			}
 		}
+
+		// The unlocked keys may not match the imported ones
+		removeSessionKeys(did);
 	}
 
 	public void importDid(InputStream in, String password, String storepass)
@@ -1902,9 +2379,7 @@ public final class DIDStore {
 				storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
-		JsonNode root = mapper.readTree(in);
+		JsonNode root = streamReader.readTree(in);
 		importDid(root, password, storepass);
 	}
 
@@ -1914,9 +2389,7 @@ public final class DIDStore {
 				storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
-		JsonNode root = mapper.readTree(in);
+		JsonNode root = streamReader.readTree(in);
 		importDid(root, password, storepass);
 	}
 
@@ -1926,9 +2399,7 @@ public final class DIDStore {
 				storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
-		JsonNode root = mapper.readTree(file);
+		JsonNode root = JsonHelper.getObjectMapper().readTree(file);
 		importDid(root, password, storepass);
 	}
 
@@ -1943,14 +2414,27 @@ public final class DIDStore {
 
 	private void exportPrivateIdentity(JsonGenerator generator, String password,
 			String storepass) throws DIDStoreException, IOException {
+		Aes256cbc.Context exportContext = new Aes256cbc.Context(password);
+		Aes256cbc.Context storeContext = new Aes256cbc.Context(storepass);
+		try {
+			exportPrivateIdentity(generator, password, exportContext, storeContext);
+		} finally {
+			exportContext.destroy();
+			storeContext.destroy();
+		}
+	}
+
+	private void exportPrivateIdentity(JsonGenerator generator, String password,
+			Aes256cbc.Context exportContext, Aes256cbc.Context storeContext)
+			throws DIDStoreException, IOException {
 		String encryptedMnemonic = storage.loadMnemonic();
-		byte[] plain = decryptFromBase64(encryptedMnemonic, storepass);
-		encryptedMnemonic = encryptToBase64(plain, password);
+		byte[] plain = decryptFromBase64(encryptedMnemonic, storeContext);
+		encryptedMnemonic = encryptToBase64(plain, exportContext);
 		Arrays.fill(plain, (byte)0);
 
 		String encryptedSeed = storage.loadPrivateIdentity();
-		plain = decryptFromBase64(encryptedSeed, storepass);
-		encryptedSeed = encryptToBase64(plain, password);
+		plain = decryptFromBase64(encryptedSeed, storeContext);
+		encryptedSeed = encryptToBase64(plain, exportContext);
 		Arrays.fill(plain, (byte)0);
 
 		int index = storage.loadPrivateIdentityIndex();
@@ -1997,7 +2481,7 @@ public final class DIDStore {
 				storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		JsonFactory factory = new JsonFactory();
+		JsonFactory factory = JsonHelper.getJsonFactory();
 		JsonGenerator generator = factory.createGenerator(out);
 		generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 		exportPrivateIdentity(generator, password, storepass);
@@ -2010,7 +2494,7 @@ public final class DIDStore {
 				|| storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		JsonFactory factory = new JsonFactory();
+		JsonFactory factory = JsonHelper.getJsonFactory();
 		JsonGenerator generator = factory.createGenerator(out);
 		generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 		exportPrivateIdentity(generator, password, storepass);
@@ -2037,7 +2521,20 @@ public final class DIDStore {
 
 	private void importPrivateIdentity(JsonNode root, String password,
 			String storepass) throws DIDStoreException, IOException {
-		Class<DIDStoreException> exceptionClass = DIDStoreException.class;
+		Aes256cbc.Context exportContext = new Aes256cbc.Context(password);
+		Aes256cbc.Context storeContext = new Aes256cbc.Context(storepass);
+		try {
+			importPrivateIdentity(root, password, exportContext, storeContext);
+		} finally {
+			exportContext.destroy();
+			storeContext.destroy();
+		}
+	}
+
+	private void importPrivateIdentity(JsonNode root, String password,
+			Aes256cbc.Context exportContext, Aes256cbc.Context storeContext)
+			throws DIDStoreException, IOException {
+		ExceptionFactory<DIDStoreException> exceptionFactory = DIDStoreException::new;
 
 		SHA256Digest sha256 = new SHA256Digest();
 		byte[] bytes = password.getBytes();
@@ -2045,7 +2542,7 @@ public final class DIDStore {
 
 		// Type
 		String type = JsonHelper.getString(root, "type", false, null,
-				"export type", exceptionClass);
+				"export type", exceptionFactory);
 		if (!type.equals(DID_EXPORT))
 			throw new DIDStoreException("Invalid export data, unknown type.");
 		bytes = type.getBytes();
@@ -2053,21 +2550,21 @@ public final class DIDStore {
 
 		// Mnemonic
 		String encryptedMnemonic = JsonHelper.getString(root, "mnemonic",
-				false, null, "mnemonic", exceptionClass);
+				false, null, "mnemonic", exceptionFactory);
 		bytes = encryptedMnemonic.getBytes();
 		sha256.update(bytes, 0, bytes.length);
 
-		byte[] plain = decryptFromBase64(encryptedMnemonic, password);
-		encryptedMnemonic = encryptToBase64(plain, storepass);
+		byte[] plain = decryptFromBase64(encryptedMnemonic, exportContext);
+		encryptedMnemonic = encryptToBase64(plain, storeContext);
 		Arrays.fill(plain, (byte)0);
 
 		String encryptedSeed = JsonHelper.getString(root, "key",
-				false, null, "key", exceptionClass);
+				false, null, "key", exceptionFactory);
 		bytes = encryptedSeed.getBytes();
 		sha256.update(bytes, 0, bytes.length);
 
-		plain = decryptFromBase64(encryptedSeed, password);
-		encryptedSeed = encryptToBase64(plain, storepass);
+		plain = decryptFromBase64(encryptedSeed, exportContext);
+		encryptedSeed = encryptToBase64(plain, storeContext);
 		Arrays.fill(plain, (byte)0);
 
 		JsonNode node = root.get("index");
@@ -2103,9 +2600,7 @@ public final class DIDStore {
 				storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
-		JsonNode root = mapper.readTree(in);
+		JsonNode root = streamReader.readTree(in);
 		importPrivateIdentity(root, password, storepass);
 	}
 
@@ -2115,9 +2610,7 @@ public final class DIDStore {
 				storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
-		JsonNode root = mapper.readTree(in);
+		JsonNode root = streamReader.readTree(in);
 		importPrivateIdentity(root, password, storepass);
 	}
 
@@ -2127,9 +2620,7 @@ public final class DIDStore {
 				storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
-		JsonNode root = mapper.readTree(file);
+		JsonNode root = JsonHelper.getObjectMapper().readTree(file);
 		importPrivateIdentity(root, password, storepass);
 	}
 
@@ -2147,21 +2638,36 @@ public final class DIDStore {
 				|| storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		ZipEntry ze;
-
-		if (containsPrivateIdentity()) {
-			ze = new ZipEntry("privateIdentity");
-			out.putNextEntry(ze);
-			exportPrivateIdentity(out, password, storepass);
-			out.closeEntry();
-		}
+		// Derive both keys once for the whole store
+		Aes256cbc.Context exportContext = new Aes256cbc.Context(password);
+		Aes256cbc.Context storeContext = new Aes256cbc.Context(storepass);
+		try {
+			JsonFactory factory = JsonHelper.getJsonFactory();
+			ZipEntry ze;
+
+			if (containsPrivateIdentity()) {
+				ze = new ZipEntry("privateIdentity");
+				out.putNextEntry(ze);
+				JsonGenerator generator = factory.createGenerator(out);
+				generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+				exportPrivateIdentity(generator, password, exportContext, storeContext);
+				generator.close();
+				out.closeEntry();
+			}
 
-		List<DID> dids = listDids(DID_ALL);
-		for (DID did : dids) {
-			ze = new ZipEntry(did.getMethodSpecificId());
-			out.putNextEntry(ze);
-			exportDid(did, out, password, storepass);
-			out.closeEntry();
+			List<DID> dids = listDids(DID_ALL);
+			for (DID did : dids) {
+				ze = new ZipEntry(did.getMethodSpecificId());
+				out.putNextEntry(ze);
+				JsonGenerator generator = factory.createGenerator(out);
+				generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+				exportDid(did, generator, password, exportContext, storeContext);
+				generator.close();
+				out.closeEntry();
+			}
+		} finally {
+			exportContext.destroy();
+			storeContext.destroy();
 		}
 	}
 
@@ -2191,13 +2697,22 @@ public final class DIDStore {
 				|| storepass == null || storepass.isEmpty())
 			throw new IllegalArgumentException();
 
-		ZipEntry ze;
-		while ((ze = in.getNextEntry()) != null) {
-			if (ze.getName().equals("privateIdentity"))
-				importPrivateIdentity(in, password, storepass);
-			else
-				importDid(in, password, storepass);
-			in.closeEntry();
+		// Derive both keys once for the whole store
+		Aes256cbc.Context exportContext = new Aes256cbc.Context(password);
+		Aes256cbc.Context storeContext = new Aes256cbc.Context(storepass);
+		try {
+			ZipEntry ze;
+			while ((ze = in.getNextEntry()) != null) {
+				JsonNode root = streamReader.readTree(in);
+				if (ze.getName().equals("privateIdentity"))
+					importPrivateIdentity(root, password, exportContext, storeContext);
+				else
+					importDid(root, password, exportContext, storeContext);
+				in.closeEntry();
+			}
+		} finally {
+			exportContext.destroy();
+			storeContext.destroy();
 		}
 	}
 
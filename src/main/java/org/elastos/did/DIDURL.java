@@ -39,6 +39,10 @@ public class DIDURL implements Comparable<DIDURL> {
 	private Map<String, String> query;
 	private String fragment;
 
+	// Lazy cached canonical string and hash code, reset by the setters
+	private String repr;
+	private int hash;
+
 	private CredentialMeta meta;
 
 	public DIDURL(DID id, String fragment) {
@@ -47,8 +51,8 @@ public class DIDURL implements Comparable<DIDURL> {
 
 		if (fragment != null) {
 			if (fragment.startsWith("did:")) {
-				ParserHelper.parse(fragment, false, new Listener());
-				if (!getDid().equals(id))
+				parse(fragment);
+				if (!did.equals(id))
 					throw new IllegalArgumentException("Mismatched arguments");
 
 				return;
@@ -67,14 +71,29 @@ public class DIDURL implements Comparable<DIDURL> {
 			throw new IllegalArgumentException();
 
 		try {
-			ParserHelper.parse(url, false, new Listener());
+			parse(url);
 		} catch(IllegalArgumentException e) {
 			throw new MalformedDIDURLException(e.getMessage());
 		}
 	}
 
+	private void parse(String url) {
+		// Most of the URLs are did#fragment, skip the ANTLR parser for them
+		String[] parts = ParserHelper.parseSimple(url, false);
+		if (parts != null) {
+			this.did = DID.intern(parts[0]);
+			this.fragment = parts[1];
+			return;
+		}
+
+		ParserHelper.parse(url, false, new Listener());
+		this.did = DID.intern(did);
+	}
+
 	public DID getDid() {
-		return did;
+		// The pooled DID is shared, hand out a copy that can carry metadata
+		return did.isPooled() ?
+				new DID(did.getMethod(), did.getMethodSpecificId()) : did;
 	}
 
 	public void setDid(DID did) {
@@ -82,6 +101,12 @@ public class DIDURL implements Comparable<DIDURL> {
 			throw new IllegalArgumentException();
 
 		this.did = did;
+		invalidate();
+	}
+
+	private void invalidate() {
+		repr = null;
+		hash = 0;
 	}
 
 	private String mapToString(Map<String, String> map, String sep) {
@@ -124,6 +149,7 @@ public class DIDURL implements Comparable<DIDURL> {
 
 	protected void addParameter(String name, String value) {
 		parameters.put(name, value);
+		invalidate();
 	}
 
 	public String getPath() {
@@ -132,6 +158,7 @@ public class DIDURL implements Comparable<DIDURL> {
 
 	protected void setPath(String path) {
 		this.path = path;
+		invalidate();
 	}
 
 	public String getQuery() {
@@ -154,6 +181,7 @@ public class DIDURL implements Comparable<DIDURL> {
 
 	protected void addQueryParameter(String name, String value) {
 		query.put(name, value);
+		invalidate();
 	}
 
 	public String getFragment() {
@@ -162,6 +190,7 @@ public class DIDURL implements Comparable<DIDURL> {
 
 	protected void setFragment(String fragment) {
 		this.fragment = fragment;
+		invalidate();
 	}
 
 	protected void setMeta(CredentialMeta meta) {
@@ -205,7 +234,10 @@ public class DIDURL implements Comparable<DIDURL> {
 	}
 	@Override
 	public String toString() {
-		StringBuilder builder = new StringBuilder(512);
+		if (repr != null)
+			return repr;
+
+		StringBuilder builder = new StringBuilder(128);
 		builder.append(did);
 
 		if (parameters != null && !parameters.isEmpty())
@@ -220,7 +252,19 @@ public class DIDURL implements Comparable<DIDURL> {
 		if (fragment != null && !fragment.isEmpty())
 			builder.append("#").append(getFragment());
 
-		return builder.toString();
+		repr = builder.toString();
+		return repr;
+	}
+
+	// Without parameters, path and query the canonical form is did#fragment
+	private boolean isSimple() {
+		return (parameters == null || parameters.isEmpty()) &&
+				(path == null || path.isEmpty()) &&
+				(query == null || query.isEmpty());
+	}
+
+	private static String normalize(String fragment) {
+		return fragment == null || fragment.isEmpty() ? null : fragment;
 	}
 
 	@Override
@@ -230,6 +274,16 @@ public class DIDURL implements Comparable<DIDURL> {
 
 		if (obj instanceof DIDURL) {
 			DIDURL id = (DIDURL)obj;
+
+			if (isSimple() && id.isSimple()) {
+				if (!did.equals(id.did))
+					return false;
+
+				String f1 = normalize(fragment);
+				String f2 = normalize(id.fragment);
+				return f1 == null ? f2 == null : f1.equals(f2);
+			}
+
 			return toString().equals(id.toString());
 		}
 
@@ -243,6 +297,27 @@ public class DIDURL implements Comparable<DIDURL> {
 
 	@Override
 	public int compareTo(DIDURL id) {
+		if (id == this)
+			return 0;
+
+		/*
+		 * Same order as the canonical strings: '#' sorts before all the
+		 * characters allowed in the method specific id, and a missing
+		 * fragment sorts first.
+		 */
+		if (isSimple() && id.isSimple()) {
+			int rc = did.compareTo(id.did);
+			if (rc != 0)
+				return rc;
+
+			String f1 = normalize(fragment);
+			String f2 = normalize(id.fragment);
+			if (f1 == null)
+				return f2 == null ? 0 : -1;
+
+			return f2 == null ? 1 : f1.compareTo(f2);
+		}
+
 		return toString().compareTo(id.toString());
 	}
 
@@ -263,12 +338,16 @@ public class DIDURL implements Comparable<DIDURL> {
 
 	@Override
 	public int hashCode() {
+		if (hash != 0)
+			return hash;
+
 		int hash = did.hashCode();
 		hash += mapHashCode(parameters);
 		hash += path == null ? 0 : path.hashCode();
 		hash += mapHashCode(query);
 		hash += fragment == null ? 0 : fragment.hashCode();
 
+		this.hash = hash;
 		return hash;
 	}
 
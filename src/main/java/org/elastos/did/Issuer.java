@@ -23,6 +23,7 @@
 package org.elastos.did;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Map;
@@ -31,6 +32,7 @@ import org.elastos.did.exception.DIDStoreException;
 import org.elastos.did.exception.InvalidKeyException;
 import org.elastos.did.exception.MalformedCredentialException;
 import org.elastos.did.exception.MalformedDIDException;
+import org.elastos.did.util.JsonHelper;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -40,6 +42,8 @@ public class Issuer {
 	private static final String DEFAULT_PUBLICKEY_TYPE = Constants.DEFAULT_PUBLICKEY_TYPE;
 	private static final int MAX_VALID_YEARS = Constants.MAX_VALID_YEARS;
 
+	private static final Charset utf8 = Charset.forName("UTF-8");
+
 	private DIDDocument self;
 	private DIDURL signKey;
 
@@ -201,7 +205,7 @@ public class Issuer {
 			if (properties == null || properties.size() == 0)
 				throw new IllegalArgumentException();
 
-			ObjectMapper mapper = new ObjectMapper();
+			ObjectMapper mapper = JsonHelper.getObjectMapper();
 			ObjectNode node = mapper.createObjectNode();
 
 			for (Map.Entry<String, String> entry : properties.entrySet())
@@ -217,7 +221,7 @@ public class Issuer {
 			if (json == null || json.isEmpty())
 				throw new IllegalArgumentException();
 
-			ObjectMapper mapper = new ObjectMapper();
+			ObjectMapper mapper = JsonHelper.getObjectMapper();
 			JsonNode node;
 			try {
 				node = mapper.readTree(json);
@@ -267,7 +271,7 @@ public class Issuer {
 				defaultExpirationDate();
 
 			String json = credential.toJson(true, true);
-			String sig = self.sign(signKey, storepass, json.getBytes());
+			String sig = self.sign(signKey, storepass, json.getBytes(utf8));
 
 			VerifiableCredential.Proof proof = new VerifiableCredential.Proof(
 					DEFAULT_PUBLICKEY_TYPE, signKey, sig);
@@ -42,8 +42,12 @@ import org.elastos.did.exception.DIDResolveException;
 import org.elastos.did.exception.DIDStoreException;
 import org.elastos.did.exception.MalformedCredentialException;
 import org.elastos.did.meta.CredentialMeta;
+import org.elastos.did.util.BatchVerifier;
+import org.elastos.did.util.EcdsaSigner;
 import org.elastos.did.util.JsonHelper;
+import org.elastos.did.util.JsonHelper.ExceptionFactory;
 
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -72,6 +76,10 @@ public class VerifiableCredential extends DIDObject {
 
 	private CredentialMeta meta;
 
+	// Memoized signing digest and the issuer document it was verified by
+	private volatile byte[] digest;
+	private volatile DIDDocument verifiedBy;
+
 	static public class CredentialSubject {
 		private DID id;
 		private ObjectNode properties;
@@ -112,11 +120,11 @@ public class VerifiableCredential extends DIDObject {
 
 		protected static CredentialSubject fromJson(JsonNode node, DID ref)
 				throws MalformedCredentialException {
-			Class<MalformedCredentialException> clazz = MalformedCredentialException.class;
+			ExceptionFactory<MalformedCredentialException> exceptionFactory = MalformedCredentialException::new;
 
 			// id
 			DID id = JsonHelper.getDid(node, ID, ref != null, ref,
-					"crendentialSubject id", clazz);
+					"crendentialSubject id", exceptionFactory);
 
 			CredentialSubject cs = new CredentialSubject(id);
 
@@ -170,16 +178,16 @@ public class VerifiableCredential extends DIDObject {
 
 		protected static Proof fromJson(JsonNode node, DID ref)
 				throws MalformedCredentialException {
-			Class<MalformedCredentialException> clazz = MalformedCredentialException.class;
+			ExceptionFactory<MalformedCredentialException> exceptionFactory = MalformedCredentialException::new;
 
 			String type = JsonHelper.getString(node, TYPE, true,
-					DEFAULT_PUBLICKEY_TYPE, "crendential proof type", clazz);
+					DEFAULT_PUBLICKEY_TYPE, "crendential proof type", exceptionFactory);
 
 			DIDURL method = JsonHelper.getDidUrl(node, VERIFICATION_METHOD, ref,
-					"crendential proof verificationMethod", clazz);
+					"crendential proof verificationMethod", exceptionFactory);
 
 			String signature = JsonHelper.getString(node, SIGNATURE,
-					false, null, "crendential proof signature", clazz);
+					false, null, "crendential proof signature", exceptionFactory);
 
 			return new Proof(type, method, signature);
 		}
@@ -229,6 +237,12 @@ public class VerifiableCredential extends DIDObject {
 	@Override
 	protected void setId(DIDURL id) {
 		super.setId(id);
+		invalidate();
+	}
+
+	private void invalidate() {
+		digest = null;
+		verifiedBy = null;
 	}
 
 	@Override
@@ -263,6 +277,7 @@ public class VerifiableCredential extends DIDObject {
 			types = new ArrayList<String>(4);
 
 		types.add(type);
+		invalidate();
 	}
 
 	protected void setType(String[] type) {
@@ -271,6 +286,8 @@ public class VerifiableCredential extends DIDObject {
 
 		for (String t : type)
 			types.add(t);
+
+		invalidate();
 	}
 
 	public DID getIssuer() {
@@ -279,6 +296,7 @@ public class VerifiableCredential extends DIDObject {
 
 	protected void setIssuer(DID issuer) {
 		this.issuer = issuer;
+		invalidate();
 	}
 
 	public Date getIssuanceDate() {
@@ -287,6 +305,7 @@ public class VerifiableCredential extends DIDObject {
 
 	protected void setIssuanceDate(Date issuanceDate) {
 		this.issuanceDate = issuanceDate;
+		invalidate();
 	}
 
 	public Date getExpirationDate() {
@@ -422,6 +441,12 @@ public class VerifiableCredential extends DIDObject {
 
 	private boolean checkGenuine() throws DIDResolveException, DIDBackendException {
 		DIDDocument issuerDoc = issuer.resolve();
+		if (issuerDoc == null)
+			return false;
+
+		// Already verified by the same (cached) issuer document
+		if (issuerDoc != null && issuerDoc == verifiedBy)
+			return true;
 
 		// Credential should signed by authentication key.
 		if (!issuerDoc.isAuthenticationKey(proof.getVerificationMethod()))
@@ -431,10 +456,84 @@ public class VerifiableCredential extends DIDObject {
 		if (!proof.getType().equals(DEFAULT_PUBLICKEY_TYPE))
 			return false;
 
-		String json = toJson(true, true);
+		boolean result = issuerDoc.verifyDigest(proof.getVerificationMethod(),
+				proof.getSignature(), getDigest());
+		if (result)
+			verifiedBy = issuerDoc;
+
+		return result;
+	}
+
+	/*
+	 * Check everything but the signatures, which are added to the batch
+	 * together with the signatures of the controller and issuer documents.
+	 */
+	protected boolean checkValid(BatchVerifier verifier)
+			throws DIDResolveException, DIDBackendException {
+		DIDDocument controllerDoc = subject.id.resolve();
+		if (controllerDoc == null || controllerDoc.isDeactivated() ||
+				controllerDoc.isExpired())
+			return false;
+
+		if (Boolean.FALSE.equals(controllerDoc.checkGenuine(verifier)))
+			return false;
+
+		DIDDocument issuerDoc = issuer.resolve();
+		if (issuerDoc == null)
+			return false;
+
+		if (!isSelfProclaimed()) {
+			if (issuerDoc.isDeactivated() || issuerDoc.isExpired())
+				return false;
+
+			if (Boolean.FALSE.equals(issuerDoc.checkGenuine(verifier)))
+				return false;
+		}
+
+		if (checkExpired())
+			return false;
+
+		if (issuerDoc != null && issuerDoc == verifiedBy)
+			return true;
+
+		if (!issuerDoc.isAuthenticationKey(proof.getVerificationMethod()))
+			return false;
+
+		if (!proof.getType().equals(DEFAULT_PUBLICKEY_TYPE))
+			return false;
+
+		verifier.add(issuerDoc.getPublicKey(proof.getVerificationMethod())
+				.getVerificationKey(),
+				DIDDocument.decodeSignature(proof.getSignature()), getDigest(),
+				(valid) -> {
+					if (valid)
+						verifiedBy = issuerDoc;
+				});
+		return true;
+	}
+
+	/*
+	 * SHA-256 digest of the normalized credential without the proof.
+	 */
+	private byte[] getDigest() {
+		byte[] result = digest;
+		if (result != null)
+			return result;
+
+		EcdsaSigner.DigestStream out = new EcdsaSigner.DigestStream();
+
+		try {
+			JsonGenerator generator = JsonHelper.getJsonFactory()
+					.createGenerator(out, JsonEncoding.UTF8);
+			toJson(generator, null, true, true);
+			generator.close();
+		} catch (IOException ignore) {
+			// DigestStream never throws
+		}
 
-		return issuerDoc.verify(proof.getVerificationMethod(),
-				proof.getSignature(), json.getBytes());
+		result = out.digest();
+		digest = result;
+		return result;
 	}
 
 	public boolean isGenuine() throws DIDResolveException, DIDBackendException {
@@ -477,6 +576,7 @@ public class VerifiableCredential extends DIDObject {
 
 	protected void setExpirationDate(Date expirationDate) {
 		this.expirationDate = expirationDate;
+		invalidate();
 	}
 
 	public CredentialSubject getSubject() {
@@ -485,6 +585,7 @@ public class VerifiableCredential extends DIDObject {
 
 	protected void setSubject(CredentialSubject subject) {
 		this.subject = subject;
+		invalidate();
 	}
 
 	public Proof getProof() {
@@ -493,10 +594,11 @@ public class VerifiableCredential extends DIDObject {
 
 	protected void setProof(Proof proof) {
 		this.proof = proof;
+		verifiedBy = null;
 	}
 
 	private void parse(Reader reader) throws MalformedCredentialException {
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode node = mapper.readTree(reader);
 			parse(node, null);
@@ -506,7 +608,7 @@ public class VerifiableCredential extends DIDObject {
 	}
 
 	private void parse(InputStream in) throws MalformedCredentialException {
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode node = mapper.readTree(in);
 			parse(node, null);
@@ -516,7 +618,7 @@ public class VerifiableCredential extends DIDObject {
 	}
 
 	private void parse(String json) throws MalformedCredentialException {
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode node = mapper.readTree(json);
 			parse(node, null);
@@ -526,7 +628,7 @@ public class VerifiableCredential extends DIDObject {
 	}
 
 	private void parse(JsonNode node, DID ref) throws MalformedCredentialException {
-		Class<MalformedCredentialException> clazz = MalformedCredentialException.class;
+		ExceptionFactory<MalformedCredentialException> exceptionFactory = MalformedCredentialException::new;
 
 		// type
 		JsonNode valueNode = node.get(TYPE);
@@ -545,15 +647,15 @@ public class VerifiableCredential extends DIDObject {
 
 		// issuer
 		issuer = JsonHelper.getDid(node, ISSUER,
-				true, ref, "crendential issuer", clazz);
+				true, ref, "crendential issuer", exceptionFactory);
 
 		// issuanceDate
 		issuanceDate = JsonHelper.getDate(node, ISSUANCE_DATE,
-				false, null, "credential issuanceDate", clazz);
+				false, null, "credential issuanceDate", exceptionFactory);
 
 		// expirationDate
 		expirationDate = JsonHelper.getDate(node, EXPIRATION_DATE,
-				true, null, "credential expirationDate", clazz);
+				true, null, "credential expirationDate", exceptionFactory);
 
 		// credentialSubject
 		valueNode = node.get(CREDENTIAL_SUBJECT);
@@ -563,7 +665,7 @@ public class VerifiableCredential extends DIDObject {
 
 		// id
 		DIDURL id = JsonHelper.getDidUrl(node, ID,
-				ref != null ? ref : subject.getId(), "crendential id", clazz);
+				ref != null ? ref : subject.getId(), "crendential id", exceptionFactory);
 		setId(id);
 
 		// IMPORTANT: help resolve full method in proof
@@ -710,7 +812,7 @@ public class VerifiableCredential extends DIDObject {
 		if (out == null)
 			throw new IllegalArgumentException();
 
-		JsonFactory factory = new JsonFactory();
+		JsonFactory factory = JsonHelper.getJsonFactory();
 		JsonGenerator generator = factory.createGenerator(out);
 
 		toJson(generator, null, normalized, forSign);
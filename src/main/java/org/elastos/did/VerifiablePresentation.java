@@ -29,14 +29,18 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import org.elastos.did.exception.DIDBackendException;
 import org.elastos.did.exception.DIDResolveException;
@@ -44,8 +48,12 @@ import org.elastos.did.exception.DIDStoreException;
 import org.elastos.did.exception.InvalidKeyException;
 import org.elastos.did.exception.MalformedCredentialException;
 import org.elastos.did.exception.MalformedPresentationException;
+import org.elastos.did.util.BatchVerifier;
+import org.elastos.did.util.EcdsaSigner;
 import org.elastos.did.util.JsonHelper;
+import org.elastos.did.util.JsonHelper.ExceptionFactory;
 
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -65,11 +73,17 @@ public class VerifiablePresentation {
 
 	private final static String DEFAULT_PUBLICKEY_TYPE = Constants.DEFAULT_PUBLICKEY_TYPE;
 
+	private static final Charset utf8 = Charset.forName("UTF-8");
+
 	private String type;
 	private Date created;
 	private Map<DIDURL, VerifiableCredential> credentials;
 	private Proof proof;
 
+	// Memoized signing digest and the signer document it was verified by
+	private volatile byte[] digest;
+	private volatile DIDDocument verifiedBy;
+
 	static public class Proof {
 		private String type;
 		private DIDURL verificationMethod;
@@ -113,22 +127,22 @@ public class VerifiablePresentation {
 
 		protected static Proof fromJson(JsonNode node, DID ref)
 				throws MalformedPresentationException {
-			Class<MalformedPresentationException> clazz = MalformedPresentationException.class;
+			ExceptionFactory<MalformedPresentationException> exceptionFactory = MalformedPresentationException::new;
 
 			String type = JsonHelper.getString(node, TYPE, true,
-					DEFAULT_PUBLICKEY_TYPE, "presentation proof type", clazz);
+					DEFAULT_PUBLICKEY_TYPE, "presentation proof type", exceptionFactory);
 
 			DIDURL method = JsonHelper.getDidUrl(node, VERIFICATION_METHOD, ref,
-					"presentation proof verificationMethod", clazz);
+					"presentation proof verificationMethod", exceptionFactory);
 
 			String realm = JsonHelper.getString(node, REALM,
-					false, null, "presentation proof realm", clazz);
+					false, null, "presentation proof realm", exceptionFactory);
 
 			String nonce = JsonHelper.getString(node, NONCE,
-					false, null, "presentation proof nonce", clazz);
+					false, null, "presentation proof nonce", exceptionFactory);
 
 			String signature = JsonHelper.getString(node, SIGNATURE,
-					false, null, "presentation proof signature", clazz);
+					false, null, "presentation proof signature", exceptionFactory);
 
 			return new Proof(type, method, realm, nonce, signature);
 		}
@@ -175,6 +189,7 @@ public class VerifiablePresentation {
 
 	protected void setType(String type) {
 		this.type = type;
+		invalidate();
 	}
 
 	public Date getCreated() {
@@ -183,6 +198,7 @@ public class VerifiablePresentation {
 
 	protected void setCreated(Date created) {
 		this.created = created;
+		invalidate();
 	}
 
 	public int getCredentialCount() {
@@ -199,6 +215,7 @@ public class VerifiablePresentation {
 
 	protected void addCredential(VerifiableCredential credential) {
 		credentials.put(credential.getId(), credential);
+		invalidate();
 	}
 
 	public VerifiableCredential getCredential(DIDURL id) {
@@ -216,8 +233,32 @@ public class VerifiablePresentation {
 		return proof.getVerificationMethod().getDid();
 	}
 
+	// Resolve all the involved DIDs with one batch request
+	private void prefetch() {
+		if (!DIDBackend.isBatchSupported())
+			return;
+
+		Set<DID> dids = new LinkedHashSet<DID>();
+		dids.add(getSigner());
+		for (VerifiableCredential vc : credentials.values()) {
+			dids.add(vc.getSubject().getId());
+			dids.add(vc.getIssuer());
+		}
+
+		if (dids.size() <= 1)
+			return;
+
+		// Best effort, the following resolves handle each DID anyway
+		try {
+			DIDBackend.resolve(dids);
+		} catch (DIDResolveException | RuntimeException ignore) {
+		}
+	}
+
 	public boolean isGenuine()
 			throws DIDResolveException, DIDBackendException {
+		prefetch();
+
 		DID signer = getSigner();
 		DIDDocument signerDoc = signer.resolve();
 		if (signerDoc == null)
@@ -244,10 +285,35 @@ public class VerifiablePresentation {
 				return false;
 		}
 
-		String json = toJson(true);
-		return signerDoc.verify(proof.getVerificationMethod(),
-				proof.getSignature(), json.getBytes(),
-				proof.getRealm().getBytes(), proof.getNonce().getBytes());
+		return verify(signerDoc);
+	}
+
+	/*
+	 * SHA-256 digest of the presentation without the proof, followed by
+	 * the realm and nonce, all in UTF-8.
+	 */
+	private byte[] getDigest() {
+		byte[] result = digest;
+		if (result != null)
+			return result;
+
+		EcdsaSigner.DigestStream out = new EcdsaSigner.DigestStream();
+
+		try {
+			JsonGenerator generator = JsonHelper.getJsonFactory()
+					.createGenerator(out, JsonEncoding.UTF8);
+			toJson(generator, true);
+			generator.close();
+
+			out.write(proof.getRealm().getBytes(utf8));
+			out.write(proof.getNonce().getBytes(utf8));
+		} catch (IOException ignore) {
+			// DigestStream never throws
+		}
+
+		result = out.digest();
+		digest = result;
+		return result;
 	}
 
 	public CompletableFuture<Boolean> isGenuineAsync() {
@@ -263,6 +329,8 @@ public class VerifiablePresentation {
 	}
 
 	public boolean isValid() throws DIDResolveException, DIDBackendException {
+		prefetch();
+
 		DID signer = getSigner();
 		DIDDocument signerDoc = signer.resolve();
 
@@ -287,10 +355,69 @@ public class VerifiablePresentation {
 				return false;
 		}
 
-		String json = toJson(true);
-		return signerDoc.verify(proof.getVerificationMethod(),
-				proof.getSignature(), json.getBytes(),
-				proof.getRealm().getBytes(), proof.getNonce().getBytes());
+		return verify(signerDoc);
+	}
+
+	/*
+	 * Same checks as isValid(), but the signatures of the presentation,
+	 * the credentials and all the involved documents are collected first,
+	 * deduplicated and verified in parallel on the executor.
+	 */
+	public boolean isValid(Executor executor)
+			throws DIDResolveException, DIDBackendException {
+		prefetch();
+
+		DID signer = getSigner();
+		DIDDocument signerDoc = signer.resolve();
+		if (signerDoc == null)
+			return false;
+
+		if (signerDoc.isDeactivated() || signerDoc.isExpired())
+			return false;
+
+		BatchVerifier verifier = new BatchVerifier(executor);
+
+		if (Boolean.FALSE.equals(signerDoc.checkGenuine(verifier)))
+			return false;
+
+		// Unsupported public key type;
+		if (!proof.getType().equals(DEFAULT_PUBLICKEY_TYPE))
+			return false;
+
+		// Credential should signed by authentication key.
+		if (!signerDoc.isAuthenticationKey(proof.getVerificationMethod()))
+			return false;
+
+		// All credentials should owned by signer
+		for (VerifiableCredential vc : credentials.values()) {
+			if (!vc.getSubject().getId().equals(signer))
+				return false;
+
+			if (!vc.checkValid(verifier))
+				return false;
+		}
+
+		if (signerDoc != verifiedBy) {
+			verifier.add(signerDoc.getPublicKey(proof.getVerificationMethod())
+					.getVerificationKey(),
+					DIDDocument.decodeSignature(proof.getSignature()),
+					getDigest(), (valid) -> {
+						if (valid)
+							verifiedBy = signerDoc;
+					});
+		}
+
+		for (boolean valid : verifier.verify()) {
+			if (!valid)
+				return false;
+		}
+
+		return true;
+	}
+
+	public boolean isValid(boolean parallel)
+			throws DIDResolveException, DIDBackendException {
+		return parallel ? isValid(BatchVerifier.getDefaultExecutor()) : isValid();
 	}
 
 	public CompletableFuture<Boolean> isValidAsync() {
@@ -311,10 +438,29 @@ public class VerifiablePresentation {
 
 	protected void setProof(Proof proof) {
 		this.proof = proof;
+		invalidate();
+	}
+
+	private void invalidate() {
+		digest = null;
+		verifiedBy = null;
+	}
+
+	private boolean verify(DIDDocument signerDoc) {
+		// Already verified by the same (cached) signer document
+		if (signerDoc == verifiedBy)
+			return true;
+
+		boolean result = signerDoc.verifyDigest(proof.getVerificationMethod(),
+				proof.getSignature(), getDigest());
+		if (result)
+			verifiedBy = signerDoc;
+
+		return result;
 	}
 
 	private void parse(Reader reader) throws MalformedPresentationException {
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode node = mapper.readTree(reader);
 			parse(node);
@@ -324,7 +470,7 @@ public class VerifiablePresentation {
 	}
 
 	private void parse(InputStream in) throws MalformedPresentationException {
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode node = mapper.readTree(in);
 			parse(node);
@@ -334,7 +480,7 @@ public class VerifiablePresentation {
 	}
 
 	private void parse(String json) throws MalformedPresentationException {
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode node = mapper.readTree(json);
 			parse(node);
@@ -344,17 +490,17 @@ public class VerifiablePresentation {
 	}
 
 	private void parse(JsonNode presentation) throws MalformedPresentationException {
-		Class<MalformedPresentationException> clazz = MalformedPresentationException.class;
+		ExceptionFactory<MalformedPresentationException> exceptionFactory = MalformedPresentationException::new;
 
 		String type = JsonHelper.getString(presentation, TYPE,
-				false, null, "presentation type", clazz);
+				false, null, "presentation type", exceptionFactory);
 		if (!type.contentEquals(DEFAULT_PRESENTATION_TYPE))
 			throw new MalformedPresentationException("Unknown presentation type: " + type);
 		else
 			setType(type);
 
 		Date created = JsonHelper.getDate(presentation, CREATED,
-				false, null, "presentation created date", clazz);
+				false, null, "presentation created date", exceptionFactory);
 		setCreated(created);
 
 		JsonNode node = presentation.get(VERIFIABLE_CREDENTIAL);
@@ -464,7 +610,7 @@ public class VerifiablePresentation {
 	}
 
 	protected void toJson(Writer out, boolean forSign) throws IOException {
-		JsonFactory factory = new JsonFactory();
+		JsonFactory factory = JsonHelper.getJsonFactory();
 		JsonGenerator generator = factory.createGenerator(out);
 		toJson(generator, forSign);
 		generator.close();
@@ -602,8 +748,8 @@ public class VerifiablePresentation {
 				throw new IllegalArgumentException();
 
 			String json = presentation.toJson(true);
-			String sig = signer.sign(signKey, storepass, json.getBytes(),
-					realm.getBytes(), nonce.getBytes());
+			String sig = signer.sign(signKey, storepass, json.getBytes(utf8),
+					realm.getBytes(utf8), nonce.getBytes(utf8));
 
 			Proof proof = new Proof(signKey, realm, nonce, sig);
 			presentation.setProof(proof);
@@ -37,6 +37,7 @@ import org.elastos.did.backend.IDChainRequest;
 import org.elastos.did.backend.IDTransactionInfo;
 import org.elastos.did.exception.DIDResolveException;
 import org.elastos.did.exception.DIDTransactionException;
+import org.elastos.did.util.JsonHelper;
 
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
@@ -150,7 +151,7 @@ public class DummyAdapter implements DIDAdapter, DIDResolver {
 	public InputStream resolve(String requestId, String did, boolean all)
 			throws DIDResolveException {
 		ByteArrayOutputStream os = new ByteArrayOutputStream(4096);
-		JsonFactory factory = new JsonFactory();
+		JsonFactory factory = JsonHelper.getJsonFactory();
 		boolean matched = false;
 
 		if (verbose)
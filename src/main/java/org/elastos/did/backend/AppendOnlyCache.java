@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did.backend;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.elastos.did.DID;
+import org.elastos.did.exception.MalformedDIDException;
+
+/*
+ * Single file persistent cache, the records are only appended to the end
+ * of the file and located by an in-memory index.
+ *
+ * Record layout:
+ *   int magic, int body length, int crc32 of body,
+ *   body: long timestamp, int hits, short did length, did, json
+ *
+ * Only the last record of a DID is live. The file is compacted when the
+ * stale records take more space than the live ones. A torn or corrupted
+ * tail left by a crash is truncated when the file is opened.
+ *
+ * The hits are counted in memory, including the hits of the memory tier,
+ * and written with the records on compaction, or on close.
+ */
+public class AppendOnlyCache implements PersistentCache {
+	private static final Charset utf8 = Charset.forName("UTF-8");
+
+	private static final int MAGIC = 0x44494443;
+	private static final int HEADER_SIZE = 12;
+	private static final int BODY_FIXED_SIZE = 14;
+	private static final long DEFAULT_COMPACT_THRESHOLD = 1024 * 1024;
+
+	private File file;
+	private long compactThreshold;
+	private FileChannel channel;
+	private volatile Map<DID, IndexEntry> index;
+	private long size;
+	private long liveSize;
+	private volatile boolean hitsChanged;
+
+	private static class IndexEntry {
+		private long offset;
+		private int length;
+		private long timestamp;
+		private AtomicInteger hits;
+
+		private IndexEntry(long offset, int length, long timestamp, int hits) {
+			this.offset = offset;
+			this.length = length;
+			this.timestamp = timestamp;
+			this.hits = new AtomicInteger(hits);
+		}
+	}
+
+	private static class Body {
+		private long timestamp;
+		private int hits;
+		private DID did;
+		private String json;
+	}
+
+	/*
+	 * compactThreshold: the file is not compacted before it grows to
+	 * this size in bytes.
+	 */
+	public AppendOnlyCache(File file, long compactThreshold)
+			throws IOException {
+		if (file == null || compactThreshold < 0)
+			throw new IllegalArgumentException();
+
+		this.file = file;
+		this.compactThreshold = compactThreshold;
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists())
+			dir.mkdirs();
+
+		// Left by an interrupted compaction, the original file is intact
+		getCompactFile().delete();
+
+		open();
+	}
+
+	public AppendOnlyCache(File file) throws IOException {
+		this(file, DEFAULT_COMPACT_THRESHOLD);
+	}
+
+	private File getCompactFile() {
+		return new File(file.getPath() + ".compact");
+	}
+
+	private void open() throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		index = new ConcurrentHashMap<DID, IndexEntry>();
+		size = 0;
+		liveSize = 0;
+
+		try {
+			recover();
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int len = channel.read(buffer, position);
+			if (len < 0)
+				throw new EOFException();
+
+			position += len;
+		}
+	}
+
+	private void writeFully(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException {
+		while (buffer.hasRemaining())
+			position += channel.write(buffer, position);
+	}
+
+	private static int checksum(byte[] data, int offset, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(data, offset, length);
+		return (int)crc.getValue();
+	}
+
+	private static byte[] encode(DID did, String json, long timestamp,
+			int hits) {
+		byte[] didBytes = did.toString().getBytes(utf8);
+		byte[] jsonBytes = json.getBytes(utf8);
+		int bodyLength = BODY_FIXED_SIZE + didBytes.length + jsonBytes.length;
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bodyLength);
+		buffer.putInt(MAGIC);
+		buffer.putInt(bodyLength);
+		buffer.putInt(0);
+		buffer.putLong(timestamp);
+		buffer.putInt(hits);
+		buffer.putShort((short)didBytes.length);
+		buffer.put(didBytes);
+		buffer.put(jsonBytes);
+
+		byte[] record = buffer.array();
+		buffer.putInt(8, checksum(record, HEADER_SIZE, bodyLength));
+		return record;
+	}
+
+	// Returns null if the record is invalid
+	private Body readRecord(long offset, int length, boolean withJson)
+			throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		readFully(buffer, offset);
+		buffer.flip();
+
+		if (buffer.getInt() != MAGIC)
+			return null;
+
+		int bodyLength = buffer.getInt();
+		if (bodyLength != length - HEADER_SIZE)
+			return null;
+
+		int crc = buffer.getInt();
+		byte[] data = buffer.array();
+		if (checksum(data, HEADER_SIZE, bodyLength) != crc)
+			return null;
+
+		Body body = new Body();
+		body.timestamp = buffer.getLong();
+		body.hits = buffer.getInt();
+		int didLength = buffer.getShort() & 0xFFFF;
+		if (didLength > bodyLength - BODY_FIXED_SIZE)
+			return null;
+
+		int pos = HEADER_SIZE + BODY_FIXED_SIZE;
+		try {
+			body.did = new DID(new String(data, pos, didLength, utf8));
+		} catch (MalformedDIDException e) {
+			return null;
+		}
+
+		pos += didLength;
+		if (withJson)
+			body.json = new String(data, pos, data.length - pos, utf8);
+
+		return body;
+	}
+
+	private void updateIndex(DID did, IndexEntry entry) {
+		IndexEntry old = index.put(did, entry);
+		if (old != null)
+			liveSize -= old.length;
+
+		liveSize += entry.length;
+	}
+
+	private void recover() throws IOException {
+		long length = channel.size();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		long offset = 0;
+
+		while (offset + HEADER_SIZE <= length) {
+			header.clear();
+			readFully(header, offset);
+			header.flip();
+
+			if (header.getInt() != MAGIC)
+				break;
+
+			int bodyLength = header.getInt();
+			if (bodyLength < BODY_FIXED_SIZE ||
+					offset + HEADER_SIZE + bodyLength > length)
+				break;
+
+			int recordLength = HEADER_SIZE + bodyLength;
+			Body body = readRecord(offset, recordLength, false);
+			if (body == null)
+				break;
+
+			updateIndex(body.did, new IndexEntry(offset, recordLength,
+					body.timestamp, body.hits));
+			offset += recordLength;
+		}
+
+		// Drop the torn or corrupted tail
+		if (offset < length) {
+			channel.truncate(offset);
+			channel.force(true);
+		}
+
+		size = offset;
+	}
+
+	@Override
+	public synchronized Record load(DID did, long ttl) throws IOException {
+		IndexEntry entry = index.get(did);
+		if (entry == null ||
+				System.currentTimeMillis() > (entry.timestamp + ttl))
+			return null;
+
+		Body body = readRecord(entry.offset, entry.length, true);
+		if (body == null)
+			throw new IOException("Corrupted cache record for " + did);
+
+		entry.hits.incrementAndGet();
+		hitsChanged = true;
+		return new Record(body.json, body.timestamp);
+	}
+
+	// Lock free, a hit racing with a store or compaction may be lost
+	@Override
+	public void recordHit(DID did) {
+		IndexEntry entry = index.get(did);
+		if (entry != null) {
+			entry.hits.incrementAndGet();
+			hitsChanged = true;
+		}
+	}
+
+	@Override
+	public synchronized void store(DID did, String json, long timestamp)
+			throws IOException {
+		IndexEntry old = index.get(did);
+		int hits = old != null ? old.hits.get() : 0;
+
+		byte[] record = encode(did, json, timestamp, hits);
+		writeFully(channel, ByteBuffer.wrap(record), size);
+
+		updateIndex(did, new IndexEntry(size, record.length, timestamp, hits));
+		size += record.length;
+
+		if (size > compactThreshold && size - liveSize > liveSize)
+			compact();
+	}
+
+	/*
+	 * Rewrite the live records to a new file and replace the current one
+	 * atomically, the access counts are persisted by the way.
+	 */
+	public synchronized void compact() throws IOException {
+		File compactFile = getCompactFile();
+		Map<DID, IndexEntry> compacted = new ConcurrentHashMap<DID, IndexEntry>(
+				index.size() * 2);
+		long offset = 0;
+
+		FileChannel out = FileChannel.open(compactFile.toPath(),
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			for (Map.Entry<DID, IndexEntry> e : index.entrySet()) {
+				IndexEntry entry = e.getValue();
+				Body body = readRecord(entry.offset, entry.length, true);
+				if (body == null)
+					continue;
+
+				int hits = entry.hits.get();
+				byte[] record = encode(e.getKey(), body.json,
+						entry.timestamp, hits);
+				writeFully(out, ByteBuffer.wrap(record), offset);
+				compacted.put(e.getKey(), new IndexEntry(offset, record.length,
+						entry.timestamp, hits));
+				offset += record.length;
+			}
+
+			out.force(true);
+		} finally {
+			out.close();
+		}
+
+		channel.close();
+		try {
+			Files.move(compactFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			// Keep using the original file and index
+			compactFile.delete();
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			throw e;
+		}
+
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+
+		index = compacted;
+		size = offset;
+		liveSize = offset;
+		hitsChanged = false;
+	}
+
+	@Override
+	public synchronized List<DID> getHotEntries(int count) {
+		List<Map.Entry<DID, IndexEntry>> entries =
+				new ArrayList<Map.Entry<DID, IndexEntry>>(index.entrySet());
+		entries.sort((a, b) -> {
+			int rc = Integer.compare(b.getValue().hits.get(),
+					a.getValue().hits.get());
+			return rc != 0 ? rc :
+				Long.compare(b.getValue().timestamp, a.getValue().timestamp);
+		});
+
+		List<DID> dids = new ArrayList<DID>(Math.min(count, entries.size()));
+		for (int i = 0; i < entries.size() && dids.size() < count; i++)
+			dids.add(entries.get(i).getKey());
+
+		return dids;
+	}
+
+	public synchronized int getEntryCount() {
+		return index.size();
+	}
+
+	// Size of the cache file in bytes
+	public synchronized long getFileSize() {
+		return size;
+	}
+
+	@Override
+	public synchronized void clear() throws IOException {
+		channel.truncate(0);
+		channel.force(true);
+		index.clear();
+		size = 0;
+		liveSize = 0;
+		hitsChanged = false;
+	}
+
+	// Persist the changed hits before closing
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			if (hitsChanged && !index.isEmpty())
+				compact();
+		} finally {
+			channel.close();
+		}
+	}
+}
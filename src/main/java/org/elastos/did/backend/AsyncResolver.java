@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did.backend;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elastos.did.DIDBatchResolver;
+import org.elastos.did.exception.DIDResolveException;
+import org.elastos.did.exception.NetworkException;
+import org.elastos.did.util.JsonHelper;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/*
+ * Resolver that keeps the HTTP connections alive between requests.
+ *
+ * Every response is read completely and the stream closed before it is
+ * handed to the caller, so the underlying connection goes back to the
+ * JDK keep-alive cache and is reused by the next request. The number of
+ * idle connections kept per host is controlled by the standard
+ * "http.maxConnections" system property (default 5), it should be set
+ * to at least maxRequests to keep all connections alive.
+ */
+public class AsyncResolver implements DIDBatchResolver {
+	public static final int DEFAULT_MAX_REQUESTS = 16;
+	public static final int DEFAULT_TIMEOUT = 30 * 1000; // milliseconds
+
+	private static final JsonFactory factory = JsonHelper.getJsonFactory();
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+
+	private URL url;
+	private int timeout;
+	private Semaphore permits;
+	private ExecutorService executor;
+
+	public AsyncResolver(String resolver, int maxRequests, int timeout)
+			throws DIDResolveException {
+		if (resolver == null || resolver.isEmpty() || maxRequests <= 0 ||
+				timeout < 0)
+			throw new IllegalArgumentException();
+
+		try {
+			this.url = new URL(resolver);
+		} catch (MalformedURLException e) {
+			throw new DIDResolveException(e);
+		}
+
+		this.timeout = timeout;
+		this.permits = new Semaphore(maxRequests, true);
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				maxRequests, maxRequests, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), (r) -> {
+					Thread t = new Thread(r, "did-resolver-" +
+							threadNumber.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		this.executor = executor;
+	}
+
+	public AsyncResolver(String resolver) throws DIDResolveException {
+		this(resolver, DEFAULT_MAX_REQUESTS, DEFAULT_TIMEOUT);
+	}
+
+	public int getTimeout() {
+		return timeout;
+	}
+
+	private static void writeRequest(JsonGenerator generator,
+			String requestId, String did, boolean all) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("id", requestId);
+		generator.writeStringField("method", "resolvedid");
+		generator.writeFieldName("params");
+		generator.writeStartObject();
+		generator.writeStringField("did", did);
+		generator.writeBooleanField("all", all);
+		generator.writeEndObject();
+		generator.writeEndObject();
+	}
+
+	private byte[] createRequest(String requestId, String did, boolean all)
+			throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(256);
+		JsonGenerator generator = factory.createGenerator(os, JsonEncoding.UTF8);
+		writeRequest(generator, requestId, did, all);
+		generator.close();
+
+		return os.toByteArray();
+	}
+
+	private byte[] createRequest(Map<String, String> requests, boolean all)
+			throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(128 * requests.size());
+		JsonGenerator generator = factory.createGenerator(os, JsonEncoding.UTF8);
+		generator.writeStartArray();
+		for (Map.Entry<String, String> entry : requests.entrySet())
+			writeRequest(generator, entry.getKey(), entry.getValue(), all);
+		generator.writeEndArray();
+		generator.close();
+
+		return os.toByteArray();
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException {
+		if (is == null)
+			return null;
+
+		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream(4096);
+			byte[] buffer = new byte[4096];
+			int len;
+			while ((len = is.read(buffer)) != -1)
+				os.write(buffer, 0, len);
+
+			return os.toByteArray();
+		} finally {
+			is.close();
+		}
+	}
+
+	private InputStream request(byte[] body) throws DIDResolveException {
+		try {
+			if (!permits.tryAcquire(timeout > 0 ? timeout : Long.MAX_VALUE,
+					TimeUnit.MILLISECONDS))
+				throw new NetworkException("Too many pending resolve requests.");
+		} catch (InterruptedException e) {
+			throw new NetworkException("Resolve request interrupted.", e);
+		}
+
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection)url.openConnection();
+			connection.setRequestMethod("POST");
+			connection.setRequestProperty("Content-Type", "application/json");
+			connection.setRequestProperty("Accept", "application/json");
+			connection.setConnectTimeout(timeout);
+			connection.setReadTimeout(timeout);
+			connection.setUseCaches(false);
+			connection.setDoOutput(true);
+
+			OutputStream os = connection.getOutputStream();
+			os.write(body);
+			os.close();
+
+			int code = connection.getResponseCode();
+			if (code != 200) {
+				// Drain the error body to keep the connection reusable
+				readFully(connection.getErrorStream());
+				return null;
+			}
+
+			return new ByteArrayInputStream(readFully(connection.getInputStream()));
+		} catch (IOException e) {
+			if (connection != null)
+				connection.disconnect();
+
+			throw new NetworkException("Network error.", e);
+		} finally {
+			permits.release();
+		}
+	}
+
+	@Override
+	public InputStream resolve(String requestId, String did, boolean all)
+			throws DIDResolveException {
+		if (requestId == null || did == null)
+			throw new IllegalArgumentException();
+
+		try {
+			return request(createRequest(requestId, did, all));
+		} catch (IOException e) {
+			throw new DIDResolveException("Create resolve request error.", e);
+		}
+	}
+
+	@Override
+	public InputStream resolve(Map<String, String> requests, boolean all)
+			throws DIDResolveException {
+		if (requests == null || requests.isEmpty())
+			throw new IllegalArgumentException();
+
+		try {
+			return request(createRequest(requests, all));
+		} catch (IOException e) {
+			throw new DIDResolveException("Create resolve request error.", e);
+		}
+	}
+
+	public CompletableFuture<InputStream> resolveAsync(String requestId,
+			String did, boolean all) {
+		if (requestId == null || did == null)
+			throw new IllegalArgumentException();
+
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return resolve(requestId, did, all);
+			} catch (DIDResolveException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.elastos.did.DID;
+import org.elastos.did.exception.MalformedDIDException;
+
+/*
+ * One JSON file per DID, named by the method specific id.
+ */
+class DirectoryCache implements PersistentCache {
+	private static final Charset utf8 = Charset.forName("UTF-8");
+
+	private File rootDir;
+
+	protected DirectoryCache(File rootDir) {
+		this.rootDir = rootDir;
+
+		if (!rootDir.exists())
+			rootDir.mkdirs();
+	}
+
+	protected File getRootDir() {
+		return rootDir;
+	}
+
+	private File getFile(String id) {
+		return new File(rootDir, id);
+	}
+
+	@Override
+	public Record load(DID did, long ttl) throws IOException {
+		// lastModified() is 0 if the file not exists
+		File file = getFile(did.getMethodSpecificId());
+		long timestamp = file.lastModified();
+		if (timestamp == 0 || System.currentTimeMillis() > (timestamp + ttl))
+			return null;
+
+		InputStream is = null;
+
+		try {
+			is = new FileInputStream(file);
+			ByteArrayOutputStream data = new ByteArrayOutputStream(4096);
+			byte[] buffer = new byte[4096];
+			int len;
+			while ((len = is.read(buffer)) != -1)
+				data.write(buffer, 0, len);
+
+			return new Record(new String(data.toByteArray(), utf8), timestamp);
+		} finally {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	@Override
+	public void store(DID did, String json, long timestamp) throws IOException {
+		OutputStream os = null;
+		Writer out = null;
+
+		try {
+			os = new FileOutputStream(getFile(did.getMethodSpecificId()));
+			out = new OutputStreamWriter(os, utf8);
+			out.write(json);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException ignore) {
+				}
+			}
+
+			if (os != null) {
+				try {
+					os.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	// No access statistics here, the recently fetched entries are the hot ones
+	@Override
+	public List<DID> getHotEntries(int count) throws IOException {
+		File[] children = rootDir.listFiles();
+		if (children == null)
+			return new ArrayList<DID>();
+
+		long[] timestamps = new long[children.length];
+		Integer[] order = new Integer[children.length];
+		for (int i = 0; i < children.length; i++) {
+			timestamps[i] = children[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(timestamps[b], timestamps[a]));
+
+		List<DID> dids = new ArrayList<DID>(Math.min(count, children.length));
+		for (int i = 0; i < order.length && dids.size() < count; i++) {
+			try {
+				dids.add(new DID("did:" + DID.METHOD + ":" +
+						children[order[i]].getName()));
+			} catch (MalformedDIDException ignore) {
+			}
+		}
+
+		return dids;
+	}
+
+	@Override
+	public void clear() throws IOException {
+		File[] children = rootDir.listFiles();
+		if (children == null)
+			return;
+
+		for (File child : children)
+			child.delete();
+	}
+
+	@Override
+	public void close() {
+	}
+}
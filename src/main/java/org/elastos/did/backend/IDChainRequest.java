@@ -35,11 +35,15 @@ import org.elastos.did.exception.DIDException;
 import org.elastos.did.exception.DIDStoreException;
 import org.elastos.did.exception.DIDTransactionException;
 import org.elastos.did.exception.InvalidKeyException;
+import org.elastos.did.exception.MalformedDIDURLException;
 import org.elastos.did.util.Base64;
 import org.elastos.did.util.JsonHelper;
+import org.elastos.did.util.JsonHelper.ExceptionFactory;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -173,8 +177,9 @@ public class IDChainRequest {
 	private void setPayload(String payload) throws DIDTransactionException {
 		try {
 			if (operation != Operation.DEACTIVATE) {
-				String json = new String(Base64.decode(payload,
-						Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP));
+				// Parse the decoded bytes directly, no intermediate string
+				byte[] json = Base64.decode(payload,
+						Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
 
 				doc = DIDDocument.fromJson(json);
 				did = doc.getSubject();
@@ -314,7 +319,7 @@ public class IDChainRequest {
 	}
 
 	public void toJson(Writer out, boolean normalized) throws IOException {
-		JsonFactory factory = new JsonFactory();
+		JsonFactory factory = JsonHelper.getJsonFactory();
 		JsonGenerator generator = factory.createGenerator(out);
 		toJson(generator, normalized);
 		generator.close();
@@ -333,31 +338,31 @@ public class IDChainRequest {
 
 	public static IDChainRequest fromJson(JsonNode node)
 			throws DIDTransactionException {
-		Class<DIDTransactionException> clazz = DIDTransactionException.class;
+		ExceptionFactory<DIDTransactionException> exceptionFactory = DIDTransactionException::new;
 
 		JsonNode header = node.get(HEADER);
 		if (header == null)
 			throw new DIDTransactionException("Missing header.");
 
 		String spec = JsonHelper.getString(header, SPECIFICATION, false,
-				null, SPECIFICATION, clazz);
+				null, SPECIFICATION, exceptionFactory);
 		if (!spec.equals(CURRENT_SPECIFICATION))
 			throw new DIDTransactionException("Unknown DID specifiction.");
 
 		String opstr = JsonHelper.getString(header, OPERATION, false,
-				null, OPERATION, clazz);
+				null, OPERATION, exceptionFactory);
 		Operation op = Operation.valueOf(opstr.toUpperCase());
 
 		IDChainRequest request = new IDChainRequest(op);
 
 		if (op == Operation.UPDATE) {
 			String txid = JsonHelper.getString(header, PREVIOUS_TXID, false,
-					null, PREVIOUS_TXID, clazz);
+					null, PREVIOUS_TXID, exceptionFactory);
 			request.setPreviousTxid(txid);
 		}
 
 		String payload = JsonHelper.getString(node, PAYLOAD, false,
-				null, PAYLOAD, clazz);
+				null, PAYLOAD, exceptionFactory);
 		request.setPayload(payload);
 
 		JsonNode proof = node.get(PROOF);
@@ -365,28 +370,149 @@ public class IDChainRequest {
 			throw new DIDTransactionException("Missing proof.");
 
 		String keyType = JsonHelper.getString(proof, KEY_TYPE, true,
-				DEFAULT_PUBLICKEY_TYPE, KEY_TYPE, clazz);
+				DEFAULT_PUBLICKEY_TYPE, KEY_TYPE, exceptionFactory);
 		if (!keyType.equals(DEFAULT_PUBLICKEY_TYPE))
 			throw new DIDTransactionException("Unknown signature key type.");
 
 		DIDURL signKey = JsonHelper.getDidUrl(proof, VERIFICATION_METHOD,
-				request.getDid(), VERIFICATION_METHOD, clazz);
+				request.getDid(), VERIFICATION_METHOD, exceptionFactory);
 		//if (doc.getAuthenticationKey(signKey) == null)
 		//	throw new DIDResolveException("Unknown signature key.");
 
 		String sig = JsonHelper.getString(proof, SIGNATURE, false,
-				null, SIGNATURE, clazz);
+				null, SIGNATURE, exceptionFactory);
 
 		request.setProof(keyType, signKey, sig);
 		return request;
 	}
 
+	private static String checkField(String value, String hint)
+			throws DIDTransactionException {
+		if (value == null)
+			throw new DIDTransactionException("Missing " + hint + ".");
+
+		return value;
+	}
+
+	/*
+	 * Streaming parser, the parser should be positioned at the start of
+	 * the request object. The header and proof fields are collected first
+	 * and checked after the object is consumed, so the field order in the
+	 * input doesn't matter.
+	 */
+	public static IDChainRequest fromJson(JsonParser parser)
+			throws DIDTransactionException, IOException {
+		ExceptionFactory<DIDTransactionException> exceptionFactory = DIDTransactionException::new;
+
+		if (parser.getCurrentToken() != JsonToken.START_OBJECT)
+			throw new DIDTransactionException("Invalid ID operation.");
+
+		boolean hasHeader = false;
+		boolean hasProof = false;
+		String spec = null, opstr = null, txid = null, payload = null;
+		String keyType = null, keyId = null, sig = null;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+
+			switch (name) {
+			case HEADER:
+				if (token != JsonToken.START_OBJECT)
+					throw new DIDTransactionException("Invalid header.");
+
+				hasHeader = true;
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String field = parser.getCurrentName();
+					parser.nextToken();
+
+					if (field.equals(SPECIFICATION))
+						spec = JsonHelper.getString(parser, SPECIFICATION, exceptionFactory);
+					else if (field.equals(OPERATION))
+						opstr = JsonHelper.getString(parser, OPERATION, exceptionFactory);
+					else if (field.equals(PREVIOUS_TXID))
+						txid = JsonHelper.getString(parser, PREVIOUS_TXID, exceptionFactory);
+					else
+						parser.skipChildren();
+				}
+				break;
+
+			case PAYLOAD:
+				payload = JsonHelper.getString(parser, PAYLOAD, exceptionFactory);
+				break;
+
+			case PROOF:
+				if (token != JsonToken.START_OBJECT)
+					throw new DIDTransactionException("Invalid proof.");
+
+				hasProof = true;
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String field = parser.getCurrentName();
+					parser.nextToken();
+
+					if (field.equals(KEY_TYPE))
+						keyType = JsonHelper.getString(parser, KEY_TYPE, exceptionFactory);
+					else if (field.equals(VERIFICATION_METHOD))
+						keyId = JsonHelper.getString(parser, VERIFICATION_METHOD, exceptionFactory);
+					else if (field.equals(SIGNATURE))
+						sig = JsonHelper.getString(parser, SIGNATURE, exceptionFactory);
+					else
+						parser.skipChildren();
+				}
+				break;
+
+			default:
+				parser.skipChildren();
+				break;
+			}
+		}
+
+		if (!hasHeader)
+			throw new DIDTransactionException("Missing header.");
+
+		spec = checkField(spec, SPECIFICATION);
+		if (!spec.equals(CURRENT_SPECIFICATION))
+			throw new DIDTransactionException("Unknown DID specifiction.");
+
+		Operation op = Operation.valueOf(checkField(opstr, OPERATION).toUpperCase());
+
+		IDChainRequest request = new IDChainRequest(op);
+
+		if (op == Operation.UPDATE)
+			request.setPreviousTxid(checkField(txid, PREVIOUS_TXID));
+
+		request.setPayload(checkField(payload, PAYLOAD));
+
+		if (!hasProof)
+			throw new DIDTransactionException("Missing proof.");
+
+		if (keyType == null)
+			keyType = DEFAULT_PUBLICKEY_TYPE;
+		if (!keyType.equals(DEFAULT_PUBLICKEY_TYPE))
+			throw new DIDTransactionException("Unknown signature key type.");
+
+		keyId = checkField(keyId, VERIFICATION_METHOD);
+		DIDURL signKey;
+		try {
+			if (keyId.startsWith("#"))
+				signKey = new DIDURL(request.getDid(), keyId.substring(1));
+			else
+				signKey = new DIDURL(keyId);
+		} catch (MalformedDIDURLException e) {
+			throw new DIDTransactionException("Invalid " + VERIFICATION_METHOD
+					+ ": " + keyId, e);
+		}
+
+		request.setProof(keyType, signKey, checkField(sig, SIGNATURE));
+		return request;
+	}
+
 	public static IDChainRequest fromJson(String json)
 			throws DIDTransactionException {
 		if (json == null || json.isEmpty())
 			throw new IllegalArgumentException();
 
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode node = mapper.readTree(json);
 			return fromJson(node);
@@ -28,8 +28,11 @@ import java.util.Date;
 import org.elastos.did.DID;
 import org.elastos.did.exception.DIDTransactionException;
 import org.elastos.did.util.JsonHelper;
+import org.elastos.did.util.JsonHelper.ExceptionFactory;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 
 public class IDTransactionInfo {
@@ -83,16 +86,16 @@ public class IDTransactionInfo {
 
 	public static IDTransactionInfo fromJson(JsonNode node)
 			throws DIDTransactionException {
-		Class<DIDTransactionException> exceptionClass = DIDTransactionException.class;
+		ExceptionFactory<DIDTransactionException> exceptionFactory = DIDTransactionException::new;
 
 		if (node == null || node.size() == 0)
 			return null;
 
 		String txid = JsonHelper.getString(node, TXID, false, null,
-				"transaction id", exceptionClass);
+				"transaction id", exceptionFactory);
 
 		Date timestamp = JsonHelper.getDate(node, TIMESTAMP, false,
-				null, "transaction timestamp", exceptionClass);
+				null, "transaction timestamp", exceptionFactory);
 
 		JsonNode reqNode = node.get(OPERATION);
 		if (reqNode == null)
@@ -102,4 +105,51 @@ public class IDTransactionInfo {
 
 		return new IDTransactionInfo(txid, timestamp, request);
 	}
+
+	public static IDTransactionInfo fromJson(JsonParser parser)
+			throws DIDTransactionException, IOException {
+		ExceptionFactory<DIDTransactionException> exceptionFactory = DIDTransactionException::new;
+
+		if (parser.getCurrentToken() != JsonToken.START_OBJECT)
+			throw new DIDTransactionException("Invalid transaction.");
+
+		String txid = null;
+		Date timestamp = null;
+		IDChainRequest request = null;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			parser.nextToken();
+
+			switch (name) {
+			case TXID:
+				txid = JsonHelper.getString(parser, "transaction id", exceptionFactory);
+				break;
+
+			case TIMESTAMP:
+				timestamp = JsonHelper.getDate(parser, "transaction timestamp",
+						exceptionFactory);
+				break;
+
+			case OPERATION:
+				request = IDChainRequest.fromJson(parser);
+				break;
+
+			default:
+				parser.skipChildren();
+				break;
+			}
+		}
+
+		if (txid == null)
+			throw new DIDTransactionException("Missing transaction id.");
+
+		if (timestamp == null)
+			throw new DIDTransactionException("Missing transaction timestamp.");
+
+		if (request == null)
+			throw new DIDTransactionException("Missing ID operation.");
+
+		return new IDTransactionInfo(txid, timestamp, request);
+	}
 }
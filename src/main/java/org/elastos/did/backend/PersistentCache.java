@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did.backend;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elastos.did.DID;
+
+/*
+ * The persistent tier of the ResolverCache.
+ */
+public interface PersistentCache {
+	public static class Record {
+		private String json;
+		private long timestamp;
+
+		public Record(String json, long timestamp) {
+			this.json = json;
+			this.timestamp = timestamp;
+		}
+
+		// The serialized ResolveResult
+		public String getJson() {
+			return json;
+		}
+
+		// When the result was fetched from the backend, in milliseconds
+		public long getTimestamp() {
+			return timestamp;
+		}
+	}
+
+	// Returns null if not cached or older than ttl milliseconds
+	public Record load(DID did, long ttl) throws IOException;
+
+	public void store(DID did, String json, long timestamp) throws IOException;
+
+	// Count a hit served by the memory tier for the hot entries
+	public default void recordHit(DID did) {
+	}
+
+	// The most used entries first, at most count entries
+	public List<DID> getHotEntries(int count) throws IOException;
+
+	public void clear() throws IOException;
+
+	public void close() throws IOException;
+}
@@ -33,9 +33,12 @@ import org.elastos.did.DID;
 import org.elastos.did.exception.DIDTransactionException;
 import org.elastos.did.exception.MalformedResolveResultException;
 import org.elastos.did.util.JsonHelper;
+import org.elastos.did.util.JsonHelper.ExceptionFactory;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -88,7 +91,7 @@ public class ResolveResult {
 	}
 
 	public void toJson(Writer out) throws IOException {
-		JsonFactory factory = new JsonFactory();
+		JsonFactory factory = JsonHelper.getJsonFactory();
 		JsonGenerator generator = factory.createGenerator(out);
 
 		generator.writeStartObject();
@@ -118,16 +121,16 @@ public class ResolveResult {
 
 	public static ResolveResult fromJson(JsonNode result)
 			throws MalformedResolveResultException {
-		Class<MalformedResolveResultException> exceptionClass = MalformedResolveResultException.class;
+		ExceptionFactory<MalformedResolveResultException> exceptionFactory = MalformedResolveResultException::new;
 
 		if (result == null || result.size() == 0)
 			throw new MalformedResolveResultException("Empty resolve result.");
 
 		DID did = JsonHelper.getDid(result, DID, false, null,
-				"Resolved result DID", exceptionClass);
+				"Resolved result DID", exceptionFactory);
 
 		int status = JsonHelper.getInteger(result, STATUS, false, -1,
-					"Resolved status", exceptionClass);
+					"Resolved status", exceptionFactory);
 
 		ResolveResult rr = new ResolveResult(did, status);
 
@@ -141,7 +144,7 @@ public class ResolveResult {
 					IDTransactionInfo ti = IDTransactionInfo.fromJson(txs.get(i));
 					rr.addTransactionInfo(ti);
 				} catch (DIDTransactionException e) {
-					new MalformedResolveResultException(e);
+					throw new MalformedResolveResultException(e);
 				}
 			}
 		}
@@ -149,12 +152,79 @@ public class ResolveResult {
 		return rr;
 	}
 
+	/*
+	 * Streaming parser, the parser should be positioned at the start of
+	 * the result object. The transactions are parsed in place, without
+	 * building an intermediate tree for the whole result.
+	 */
+	public static ResolveResult fromJson(JsonParser parser)
+			throws MalformedResolveResultException, IOException {
+		ExceptionFactory<MalformedResolveResultException> exceptionFactory = MalformedResolveResultException::new;
+
+		if (parser.getCurrentToken() != JsonToken.START_OBJECT)
+			throw new MalformedResolveResultException("Invalid resolve result.");
+
+		DID did = null;
+		int status = -1;
+		List<IDTransactionInfo> txs = null;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+
+			switch (name) {
+			case DID:
+				did = JsonHelper.getDid(parser, "Resolved result DID", exceptionFactory);
+				break;
+
+			case STATUS:
+				status = JsonHelper.getInteger(parser, "Resolved status", exceptionFactory);
+				break;
+
+			case TRANSACTION:
+				if (token != JsonToken.START_ARRAY)
+					throw new MalformedResolveResultException("Invalid resolve result, invalid transaction.");
+
+				txs = new LinkedList<IDTransactionInfo>();
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					try {
+						txs.add(IDTransactionInfo.fromJson(parser));
+					} catch (DIDTransactionException e) {
+						throw new MalformedResolveResultException(e);
+					}
+				}
+				break;
+
+			default:
+				parser.skipChildren();
+				break;
+			}
+		}
+
+		if (did == null)
+			throw new MalformedResolveResultException("Missing Resolved result DID.");
+
+		if (status == -1)
+			throw new MalformedResolveResultException("Missing Resolved status.");
+
+		ResolveResult rr = new ResolveResult(did, status);
+
+		if (status != STATUS_NOT_FOUND) {
+			if (txs == null || txs.isEmpty())
+				throw new MalformedResolveResultException("Invalid resolve result, missing transaction.");
+
+			rr.idtxs = txs;
+		}
+
+		return rr;
+	}
+
 	public static ResolveResult fromJson(String json)
 			throws MalformedResolveResultException {
 		if (json == null || json.isEmpty())
 			throw new IllegalArgumentException();
 
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode result = mapper.readTree(json);
 			return fromJson(result);
@@ -168,7 +238,7 @@ public class ResolveResult {
 		if (in == null)
 			throw new IllegalArgumentException();
 
-		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper mapper = JsonHelper.getObjectMapper();
 		try {
 			JsonNode result = mapper.readTree(in);
 			return fromJson(result);
@@ -23,124 +23,315 @@
 package org.elastos.did.backend;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Reader;
-import java.io.Writer;
-import java.nio.charset.Charset;
-import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.elastos.did.DID;
 import org.elastos.did.exception.DIDResolveException;
-import org.elastos.did.util.LRUCache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
 
 public class ResolverCache {
-	private static final Charset utf8 = Charset.forName("UTF-8");
+	public static final long DEFAULT_MAX_ENTRIES = 0;
+	public static final long DEFAULT_MAX_WEIGHT = 16 * 1024 * 1024; // bytes
+	public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+	public static final long DEFAULT_MAX_NOT_FOUND_ENTRIES = 10000;
 
-	private static final int CACHE_INITIAL_CAPACITY = 16;
-	private static final int CACHE_MAX_CAPACITY = 32;
+	private static volatile PersistentCache persistent;
+	private static Cache<DID, Entry> cache = createCache(DEFAULT_MAX_ENTRIES,
+			DEFAULT_MAX_WEIGHT, DEFAULT_CONCURRENCY_LEVEL);
 
-	private static File rootDir;
-	private static Map<DID, ResolveResult> cache = LRUCache.createInstance(
-			CACHE_INITIAL_CAPACITY, CACHE_MAX_CAPACITY);
+	private static LongAdder hits = new LongAdder();
+	private static LongAdder misses = new LongAdder();
+	private static LongAdder evictions = new LongAdder();
 
-	public static void setCacheDir(File rootDir) {
-		ResolverCache.rootDir = rootDir;
+	// DIDs resolved as not found, mapped to the fetch time
+	private static Cache<DID, Long> notFound = createNotFoundCache(
+			DEFAULT_MAX_NOT_FOUND_ENTRIES);
+	private static LongAdder negativeHits = new LongAdder();
+
+	private static class Entry {
+		private ResolveResult rr;
+		private long timestamp;
+		private int weight;
+
+		private Entry(ResolveResult rr, long timestamp, int weight) {
+			this.rr = rr;
+			this.timestamp = timestamp;
+			this.weight = weight;
+		}
+
+		private boolean isExpired(long ttl) {
+			return System.currentTimeMillis() > (timestamp + ttl);
+		}
+	}
+
+	public static class Statistics {
+		private long hitCount;
+		private long missCount;
+		private long evictionCount;
+		private long size;
+		private long negativeHitCount;
+		private long negativeSize;
+
+		private Statistics(long hitCount, long missCount,
+				long evictionCount, long size,
+				long negativeHitCount, long negativeSize) {
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.evictionCount = evictionCount;
+			this.size = size;
+			this.negativeHitCount = negativeHitCount;
+			this.negativeSize = negativeSize;
+		}
+
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		public long getMissCount() {
+			return missCount;
+		}
+
+		public long getEvictionCount() {
+			return evictionCount;
+		}
+
+		// Number of in-memory entries
+		public long getSize() {
+			return size;
+		}
+
+		// Number of lookups answered by the not found cache
+		public long getNegativeHitCount() {
+			return negativeHitCount;
+		}
 
-		if (!rootDir.exists())
-			rootDir.mkdirs();
+		// Number of cached not found DIDs
+		public long getNegativeSize() {
+			return negativeSize;
+		}
+
+		public double getHitRate() {
+			long total = hitCount + missCount;
+			return total == 0 ? 1.0 : (double)hitCount / total;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("hits: %d, misses: %d, evictions: %d, size: %d, "
+					+ "negative hits: %d, negative size: %d",
+					hitCount, missCount, evictionCount, size,
+					negativeHitCount, negativeSize);
+		}
 	}
 
-	private static File getCacheDir() {
-		if (rootDir == null)
-			throw new IllegalStateException("No cache dir specified for ResolverCache");
+	private static Cache<DID, Entry> createCache(long maxEntries,
+			long maxWeight, int concurrencyLevel) {
+		RemovalListener<DID, Entry> listener = (notification) -> {
+			if (notification.wasEvicted())
+				evictions.increment();
+		};
+
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+				.concurrencyLevel(concurrencyLevel);
 
-		return rootDir;
+		if (maxWeight > 0)
+			builder.maximumWeight(maxWeight)
+				.weigher((DID did, Entry entry) -> entry.weight);
+		else if (maxEntries > 0)
+			builder.maximumSize(maxEntries);
+
+		return builder.removalListener(listener).build();
 	}
 
-	private static File getFile(String id) {
-		String filename = getCacheDir().getAbsolutePath() + File.separator + id;
-		return new File(filename);
+	private static Cache<DID, Long> createNotFoundCache(long maxEntries) {
+		return CacheBuilder.newBuilder().maximumSize(maxEntries).build();
 	}
 
-	public static void reset() {
-		cache.clear();
+	// Configure the max entries of the not found cache
+	public static void configureNotFound(long maxEntries) {
+		if (maxEntries < 0)
+			throw new IllegalArgumentException();
 
-		File[] children = getCacheDir().listFiles();
-		for (File child : children)
-			child.delete();
+		notFound = createNotFoundCache(maxEntries);
 	}
 
-	public static void store(ResolveResult rr) throws IOException {
-		OutputStream os = null;
-		Writer out = null;
+	public static void storeNotFound(DID did) {
+		notFound.put(did, System.currentTimeMillis());
+	}
 
-		try {
-			os = new FileOutputStream(getFile(rr.getDid().getMethodSpecificId()));
-			out = new OutputStreamWriter(os, utf8);
-			out.write(rr.toJson());
-
-			cache.put(rr.getDid(), rr);
-		} finally {
-			if (out != null) {
-				try {
-					out.close();
-				} catch (IOException ignore) {
-				}
-			}
+	public static void removeNotFound(DID did) {
+		notFound.invalidate(did);
+	}
+
+	// Check whether the DID was resolved as not found within ttl
+	public static boolean isNotFound(DID did, long ttl) {
+		Long timestamp = notFound.getIfPresent(did);
+		if (timestamp == null)
+			return false;
+
+		if (System.currentTimeMillis() > (timestamp + ttl)) {
+			notFound.asMap().remove(did, timestamp);
+			return false;
+		}
+
+		negativeHits.increment();
+		return true;
+	}
+
+	/*
+	 * Configure the in-memory tier, the cached entries are dropped.
+	 * maxWeight limits the total serialized size of the cached results in
+	 * bytes, maxEntries limits the number of entries if maxWeight is 0.
+	 */
+	public static void configure(long maxEntries, long maxWeight,
+			int concurrencyLevel) {
+		if (maxEntries < 0 || maxWeight < 0 || concurrencyLevel <= 0)
+			throw new IllegalArgumentException();
+
+		Cache<DID, Entry> old = cache;
+		cache = createCache(maxEntries, maxWeight, concurrencyLevel);
+		old.invalidateAll();
+	}
 
-			if (os != null) {
-				try {
-					os.close();
-				} catch (IOException ignore) {
-				}
+	public static Statistics getStatistics() {
+		return new Statistics(hits.sum(), misses.sum(), evictions.sum(),
+				cache.size(), negativeHits.sum(), notFound.size());
+	}
+
+	public static void resetStatistics() {
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+		negativeHits.reset();
+	}
+
+	/*
+	 * Without the cache dir the results are only cached in memory,
+	 * e.g. for the stateless verifier services.
+	 */
+	public static void setCacheDir(File rootDir) {
+		setPersistentCache(rootDir != null ? new DirectoryCache(rootDir) : null);
+	}
+
+	public static File getCacheDir() {
+		return persistent instanceof DirectoryCache ?
+				((DirectoryCache)persistent).getRootDir() : null;
+	}
+
+	public static synchronized void setPersistentCache(PersistentCache cache) {
+		if (persistent != null && persistent != cache) {
+			try {
+				persistent.close();
+			} catch (IOException ignore) {
 			}
 		}
+
+		persistent = cache;
+	}
+
+	public static PersistentCache getPersistentCache() {
+		return persistent;
+	}
+
+	public static void reset() {
+		cache.invalidateAll();
+		notFound.invalidateAll();
+
+		PersistentCache persistent = ResolverCache.persistent;
+		if (persistent == null)
+			return;
+
+		try {
+			persistent.clear();
+		} catch (IOException e) {
+			System.out.println("!!! Clear resolver cache error: "
+					+ e.getMessage());
+		}
+	}
+
+	public static void store(ResolveResult rr) throws IOException {
+		String json = rr.toJson();
+		long timestamp = System.currentTimeMillis();
+		cache.put(rr.getDid(), new Entry(rr, timestamp, json.length()));
+		notFound.invalidate(rr.getDid());
+
+		PersistentCache persistent = ResolverCache.persistent;
+		if (persistent != null)
+			persistent.store(rr.getDid(), json, timestamp);
 	}
 
 	public static ResolveResult load(DID did, long ttl)
 			throws DIDResolveException {
-		File file = getFile(did.getMethodSpecificId());
+		Entry entry = cache.getIfPresent(did);
+		if (entry != null) {
+			if (!entry.isExpired(ttl)) {
+				hits.increment();
 
-		if (!file.exists())
-			return null;
+				PersistentCache persistent = ResolverCache.persistent;
+				if (persistent != null)
+					persistent.recordHit(did);
 
-		if (System.currentTimeMillis() > (file.lastModified() + ttl))
-			return null;
+				return entry.rr;
+			}
 
-		if (cache.containsKey(did))
-			return cache.get(did);
+			cache.asMap().remove(did, entry);
+		}
+
+		misses.increment();
 
-		InputStream is = null;
-		Reader in = null;
+		PersistentCache persistent = ResolverCache.persistent;
+		if (persistent == null)
+			return null;
 
 		try {
-			is = new FileInputStream(file);
-			in = new InputStreamReader(is, utf8);
-			ResolveResult rr = ResolveResult.fromJson(in);
-			cache.put(rr.getDid(), rr);
+			PersistentCache.Record record = persistent.load(did, ttl);
+			if (record == null)
+				return null;
+
+			ResolveResult rr = ResolveResult.fromJson(record.getJson());
+			cache.put(rr.getDid(), new Entry(rr, record.getTimestamp(),
+					record.getJson().length()));
 			return rr;
 		} catch (IOException e) {
 			throw new DIDResolveException(e);
-		} finally {
-			if (in != null) {
-				try {
-					in.close();
-				} catch (IOException ignore) {
-				}
-			}
+		}
+	}
+
+	// Check whether the in-memory entry is older than ttl
+	public static boolean isStale(DID did, long ttl) {
+		Entry entry = cache.getIfPresent(did);
+		return entry != null && entry.isExpired(ttl);
+	}
+
+	/*
+	 * Load the hottest entries of the persistent cache that are not older
+	 * than ttl into memory, returns the number of the loaded entries.
+	 */
+	public static int warmUp(int count, long ttl) throws DIDResolveException {
+		PersistentCache persistent = ResolverCache.persistent;
+		if (persistent == null || count <= 0)
+			return 0;
 
-			if (is != null) {
-				try {
-					is.close();
-				} catch (IOException ignore) {
-				}
+		int loaded = 0;
+		try {
+			for (DID did : persistent.getHotEntries(count)) {
+				PersistentCache.Record record = persistent.load(did, ttl);
+				if (record == null)
+					continue;
+
+				ResolveResult rr = ResolveResult.fromJson(record.getJson());
+				cache.put(rr.getDid(), new Entry(rr, record.getTimestamp(),
+						record.getJson().length()));
+				loaded++;
 			}
+		} catch (IOException e) {
+			throw new DIDResolveException(e);
 		}
+
+		return loaded;
 	}
 }
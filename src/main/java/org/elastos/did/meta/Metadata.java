@@ -29,6 +29,7 @@ import java.util.TreeMap;
 
 import org.elastos.did.DIDStore;
 import org.elastos.did.exception.MalformedMetaException;
+import org.elastos.did.util.JsonHelper;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -116,7 +117,7 @@ public abstract class Metadata {
 		JsonNode node = null;
 
 		if (metadata != null && !metadata.isEmpty()) {
-			ObjectMapper mapper = new ObjectMapper();
+			ObjectMapper mapper = JsonHelper.getObjectMapper();
 
 			try {
 				node = mapper.readTree(metadata);
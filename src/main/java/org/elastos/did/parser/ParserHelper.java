@@ -30,8 +30,91 @@ import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.elastos.did.DID;
 
 public class ParserHelper {
+	private static final String PREFIX = "did:" + DID.METHOD + ":";
+
+	private static boolean isHexDigit(char ch) {
+		return (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'f') ||
+				(ch >= 'A' && ch <= 'F');
+	}
+
+	private static boolean isAlnum(char ch) {
+		return (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'z') ||
+				(ch >= 'A' && ch <= 'Z');
+	}
+
+	/*
+	 * Scan a STRING token of the grammar starting at start, returns the
+	 * end offset, or -1 if there is no valid token at start.
+	 */
+	private static int scanString(String str, int start) {
+		int len = str.length();
+		int pos = start;
+
+		while (pos < len) {
+			char ch = str.charAt(pos);
+
+			if (isAlnum(ch) || (pos == start && ch == '~') ||
+					(pos > start && (ch == '.' || ch == '-'))) {
+				pos++;
+			} else if (ch == '%') {
+				if (pos + 2 >= len || !isHexDigit(str.charAt(pos + 1)) ||
+						!isHexDigit(str.charAt(pos + 2)))
+					return -1;
+
+				pos += 3;
+			} else {
+				break;
+			}
+		}
+
+		if (pos == start)
+			return -1;
+
+		// The lexer takes a bare "did" as the literal, not a STRING
+		if (pos - start == 3 && str.startsWith("did", start))
+			return -1;
+
+		return pos;
+	}
+
+	/*
+	 * Hand written scanner for the common forms:
+	 *   did:elastos:method-specific-string
+	 *   did:elastos:method-specific-string#fragment (if not didOnly)
+	 *
+	 * Returns {methodSpecificString, fragment} with the same values the
+	 * grammar produces, or null if the input is not in these exact forms.
+	 * The caller should fall back to parse() for the null case, which
+	 * also reports the syntax errors.
+	 */
+	public static String[] parseSimple(String didurl, boolean didOnly) {
+		if (!didurl.startsWith(PREFIX))
+			return null;
+
+		int len = didurl.length();
+		int start = PREFIX.length();
+		int end = scanString(didurl, start);
+		if (end < 0)
+			return null;
+
+		String id = didurl.substring(start, end);
+		if (end == len)
+			return new String[] { id, null };
+
+		if (didOnly || didurl.charAt(end) != '#')
+			return null;
+
+		start = end + 1;
+		end = scanString(didurl, start);
+		if (end != len)
+			return null;
+
+		return new String[] { id, didurl.substring(start) };
+	}
+
 	public static void parse(String didurl, boolean didOnly,
 			DIDURLBaseListener listener) {
 		BaseErrorListener errorListener = new BaseErrorListener() {
@@ -54,28 +54,123 @@ public class Aes256cbc {
 		md.doFinal(iv, 0);
 	}
 
-	public static byte[] encrypt(byte[] plain, int offset, int length,
-			String passwd) throws CryptoException {
-		byte[] key = new byte[32];
-		byte[] iv = new byte[16];
-
-		generatrKeyAndIv(passwd, key, iv);
-
-		KeyParameter keyParam = new KeyParameter(key);
-		ParametersWithIV keyWithIv = new ParametersWithIV(keyParam, iv);
-
-		BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(
+	/*
+	 * Cipher context of a password: the key and IV are derived once, and
+	 * each thread reuses its own initialized ciphers. Create one for a bulk
+	 * operation and destroy it when the operation ends.
+	 */
+	public static class Context {
+		private volatile ParametersWithIV keyWithIv;
+
+		private ThreadLocal<BufferedBlockCipher> encryptor =
+				new ThreadLocal<BufferedBlockCipher>() {
+			@Override
+			protected BufferedBlockCipher initialValue() {
+				return createCipher(true);
+			}
+		};
+
+		private ThreadLocal<BufferedBlockCipher> decryptor =
+				new ThreadLocal<BufferedBlockCipher>() {
+			@Override
+			protected BufferedBlockCipher initialValue() {
+				return createCipher(false);
+			}
+		};
+
+		public Context(String passwd) {
+			if (passwd == null)
+				throw new IllegalArgumentException();
+
+			byte[] key = new byte[32];
+			byte[] iv = new byte[16];
+
+			generatrKeyAndIv(passwd, key, iv);
+
+			keyWithIv = new ParametersWithIV(new KeyParameter(key), iv);
+			Arrays.fill(key, (byte)0);
+		}
+
+		private ParametersWithIV getKeyWithIv() {
+			ParametersWithIV keyWithIv = this.keyWithIv;
+			if (keyWithIv == null)
+				throw new IllegalStateException("Context destroyed.");
+
+			return keyWithIv;
+		}
+
+		private BufferedBlockCipher createCipher(boolean encrypt) {
+			ParametersWithIV keyWithIv = getKeyWithIv();
+			BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(
 					new CBCBlockCipher(new AESEngine()));
-        cipher.init(true, keyWithIv);
-
-        byte[] secret = new byte[cipher.getOutputSize(length)];
-        int len = cipher.processBytes(plain, offset, length, secret, 0);
-		len += cipher.doFinal(secret, len);
-
-		if (len < secret.length)
-        	plain = Arrays.copyOf(secret, len);
+			cipher.init(encrypt, keyWithIv);
+			return cipher;
+		}
+
+		private static byte[] process(BufferedBlockCipher cipher, byte[] input,
+				int offset, int length) throws CryptoException {
+			try {
+				byte[] output = new byte[cipher.getOutputSize(length)];
+				int len = cipher.processBytes(input, offset, length, output, 0);
+				len += cipher.doFinal(output, len);
+
+				if (len < output.length)
+					output = Arrays.copyOf(output, len);
+
+				return output;
+			} catch (CryptoException | RuntimeException e) {
+				// Back to the IV for the next use on this thread
+				cipher.reset();
+				throw e;
+			}
+		}
+
+		public byte[] encrypt(byte[] plain, int offset, int length)
+				throws CryptoException {
+			getKeyWithIv();
+			return process(encryptor.get(), plain, offset, length);
+		}
+
+		public byte[] encrypt(byte[] plain) throws CryptoException {
+			return encrypt(plain, 0, plain.length);
+		}
+
+		public byte[] decrypt(byte[] secret, int offset, int length)
+				throws CryptoException {
+			getKeyWithIv();
+			return process(decryptor.get(), secret, offset, length);
+		}
+
+		public byte[] decrypt(byte[] secret) throws CryptoException {
+			return decrypt(secret, 0, secret.length);
+		}
+
+		/*
+		 * Wipe the derived key and IV, the context is unusable afterwards.
+		 * The ciphers of the other threads go away with the context.
+		 */
+		public void destroy() {
+			ParametersWithIV keyWithIv = this.keyWithIv;
+			if (keyWithIv == null)
+				return;
+
+			this.keyWithIv = null;
+			Arrays.fill(((KeyParameter)keyWithIv.getParameters()).getKey(), (byte)0);
+			Arrays.fill(keyWithIv.getIV(), (byte)0);
+
+			encryptor.remove();
+			decryptor.remove();
+		}
+	}
 
-		return secret;
+	public static byte[] encrypt(byte[] plain, int offset, int length,
+			String passwd) throws CryptoException {
+		Context context = new Context(passwd);
+		try {
+			return context.encrypt(plain, offset, length);
+		} finally {
+			context.destroy();
+		}
 	}
 
 	public static byte[] encrypt(byte[] plain, int offset, String passwd)
@@ -90,26 +185,12 @@ public class Aes256cbc {
 
 	public static byte[] decrypt(byte[] secret, int offset, int length,
 			String passwd) throws CryptoException {
-		byte[] key = new byte[32];
-		byte[] iv = new byte[16];
-
-		generatrKeyAndIv(passwd, key, iv);
-
-		KeyParameter keyParam = new KeyParameter(key);
-		ParametersWithIV keyWithIv = new ParametersWithIV(keyParam, iv);
-
-        BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(
-        		new CBCBlockCipher(new AESEngine()));
-        cipher.init(false, keyWithIv);
-
-        byte[] plain = new byte[cipher.getOutputSize(length)];
-        int len = cipher.processBytes(secret, offset, length, plain, 0);
-        len += cipher.doFinal(plain, len);
-
-        if (len < plain.length)
-        	plain = Arrays.copyOf(plain, len);
-
-        return plain;
+		Context context = new Context(passwd);
+		try {
+			return context.decrypt(secret, offset, length);
+		} finally {
+			context.destroy();
+		}
 	}
 
 	public static byte[] decrypt(byte[] secret, int offset, String passwd)
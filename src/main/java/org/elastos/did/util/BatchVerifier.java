@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/*
+ * Verify a set of (public key, digest, signature) tuples together.
+ * Identical tuples are verified only once, the distinct ones are verified
+ * in parallel on the given executor, or on the calling thread if the
+ * executor is null. The results are returned in the order of add(), the
+ * callbacks are invoked in the order the distinct signatures were added.
+ */
+public class BatchVerifier {
+	private static volatile ExecutorService defaultExecutor;
+
+	private Executor executor;
+	private List<Item> items;
+	private Map<ByteBuffer, Item> index;
+
+	private static class Item {
+		private EcdsaSigner.VerificationKey key;
+		private byte[] signature;
+		private byte[] digest;
+		private List<Consumer<Boolean>> callbacks;
+		private volatile boolean valid;
+
+		private Item(EcdsaSigner.VerificationKey key, byte[] signature,
+				byte[] digest) {
+			this.key = key;
+			this.signature = signature;
+			this.digest = digest;
+		}
+
+		private void verify() {
+			try {
+				valid = EcdsaSigner.verifyDigest(key, signature, digest);
+			} catch (RuntimeException e) {
+				valid = false;
+			}
+		}
+	}
+
+	public BatchVerifier(Executor executor) {
+		this.executor = executor;
+		this.items = new ArrayList<Item>();
+		this.index = new LinkedHashMap<ByteBuffer, Item>();
+	}
+
+	public BatchVerifier() {
+		this(null);
+	}
+
+	/*
+	 * Shared daemon pool sized to the available processors.
+	 */
+	public static Executor getDefaultExecutor() {
+		ExecutorService executor = defaultExecutor;
+		if (executor == null) {
+			synchronized (BatchVerifier.class) {
+				executor = defaultExecutor;
+				if (executor == null) {
+					executor = Executors.newFixedThreadPool(
+							Runtime.getRuntime().availableProcessors(), (r) -> {
+						Thread t = new Thread(r, "did-batch-verifier");
+						t.setDaemon(true);
+						return t;
+					});
+					defaultExecutor = executor;
+				}
+			}
+		}
+
+		return executor;
+	}
+
+	/*
+	 * Add a signature to the batch, the optional callback is invoked with
+	 * the result on the thread calling verify(). Returns the index of the
+	 * result.
+	 */
+	public int add(EcdsaSigner.VerificationKey key, byte[] signature,
+			byte[] digest, Consumer<Boolean> callback) {
+		if (key == null || signature == null || digest == null)
+			throw new IllegalArgumentException();
+
+		byte[] publicKey = key.getPublicKeyBytes();
+		ByteBuffer id = ByteBuffer.allocate(publicKey.length
+				+ digest.length + signature.length);
+		id.put(publicKey).put(digest).put(signature);
+		id.flip();
+
+		Item item = index.get(id);
+		if (item == null) {
+			item = new Item(key, signature, digest);
+			index.put(id, item);
+		}
+
+		if (callback != null) {
+			if (item.callbacks == null)
+				item.callbacks = new ArrayList<Consumer<Boolean>>(1);
+
+			item.callbacks.add(callback);
+		}
+
+		items.add(item);
+		return items.size() - 1;
+	}
+
+	public int add(EcdsaSigner.VerificationKey key, byte[] signature,
+			byte[] digest) {
+		return add(key, signature, digest, null);
+	}
+
+	public int add(byte[] publicKey, byte[] signature, byte[] digest) {
+		return add(EcdsaSigner.decodePublicKey(publicKey), signature, digest, null);
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	public int getUniqueCount() {
+		return index.size();
+	}
+
+	public boolean[] verify() {
+		List<Item> unique = new ArrayList<Item>(index.values());
+
+		if (executor == null || unique.size() < 2) {
+			for (Item item : unique)
+				item.verify();
+		} else {
+			CompletableFuture<?>[] futures = new CompletableFuture<?>[unique.size()];
+			for (int i = 0; i < futures.length; i++)
+				futures[i] = CompletableFuture.runAsync(unique.get(i)::verify, executor);
+
+			CompletableFuture.allOf(futures).join();
+		}
+
+		for (Item item : unique) {
+			if (item.callbacks == null)
+				continue;
+
+			for (Consumer<Boolean> callback : item.callbacks)
+				callback.accept(item.valid);
+		}
+
+		boolean[] results = new boolean[items.size()];
+		for (int i = 0; i < results.length; i++)
+			results[i] = items.get(i).valid;
+
+		return results;
+	}
+}
@@ -22,17 +22,25 @@
 
 package org.elastos.did.util;
 
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 
-import org.spongycastle.asn1.sec.SECNamedCurves;
 import org.spongycastle.asn1.x9.X9ECParameters;
 import org.spongycastle.crypto.digests.SHA256Digest;
 import org.spongycastle.crypto.ec.CustomNamedCurves;
 import org.spongycastle.crypto.params.ECDomainParameters;
 import org.spongycastle.crypto.params.ECPrivateKeyParameters;
 import org.spongycastle.crypto.params.ECPublicKeyParameters;
+import org.spongycastle.crypto.params.ParametersWithRandom;
 import org.spongycastle.crypto.signers.ECDSASigner;
+import org.spongycastle.crypto.signers.HMacDSAKCalculator;
 import org.spongycastle.crypto.signers.RandomDSAKCalculator;
+import org.spongycastle.math.ec.ECMultiplier;
+import org.spongycastle.math.ec.ECPoint;
+import org.spongycastle.math.ec.FixedPointCombMultiplier;
 import org.spongycastle.math.ec.FixedPointUtil;
 
 public class EcdsaSigner {
@@ -40,6 +48,15 @@ public class EcdsaSigner {
 	private static X9ECParameters CURVE_PARAMS;
 	protected static ECDomainParameters CURVE;
 
+	// Only the random is reused, it holds nothing of the private keys
+	private static final ThreadLocal<SecureRandom> randoms =
+			new ThreadLocal<SecureRandom>() {
+		@Override
+		protected SecureRandom initialValue() {
+			return new SecureRandom();
+		}
+	};
+
 	static {
 		CURVE_PARAMS = CustomNamedCurves.getByName(CURVE_ALGORITHM);
 		FixedPointUtil.precompute(CURVE_PARAMS.getG(), 12);
@@ -49,18 +66,124 @@ public class EcdsaSigner {
 				CURVE_PARAMS.getH());
 	}
 
+	/*
+	 * Stream the written bytes into a SHA-256 digest, used to hash the
+	 * serialized objects without buffering them in memory.
+	 */
+	public static class DigestStream extends OutputStream {
+		private SHA256Digest sha256 = new SHA256Digest();
+
+		@Override
+		public void write(int b) {
+			sha256.update((byte)b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			sha256.update(b, off, len);
+		}
+
+		public byte[] digest() {
+			byte digest[] = new byte[32];
+			sha256.doFinal(digest, 0);
+			return digest;
+		}
+	}
+
+	/*
+	 * Decoded public key, reusable across the verifications.
+	 */
+	public static class VerificationKey {
+		private byte[] publicKey;
+		private ECPublicKeyParameters keyParams;
+
+		private VerificationKey(byte[] publicKey) {
+			this.publicKey = publicKey.clone();
+			this.keyParams = new ECPublicKeyParameters(
+					CURVE.getCurve().decodePoint(publicKey).normalize(), CURVE);
+		}
+
+		public byte[] getPublicKeyBytes() {
+			return publicKey.clone();
+		}
+	}
+
+	public static VerificationKey decodePublicKey(byte[] publicKey) {
+		if (publicKey == null)
+			throw new IllegalArgumentException();
+
+		return new VerificationKey(publicKey);
+	}
+
 	public static byte[] sign(byte[] privateKey, byte[] ... inputs) {
+		return signDigest(privateKey, sha256Digest(inputs), false);
+	}
+
+	/*
+	 * deterministic: use the nonces of RFC 6979 instead of the random
+	 * nonces, the signatures of the same key and data are the same.
+	 * Both kinds of signatures are verified the same way.
+	 */
+	public static byte[] sign(byte[] privateKey, boolean deterministic,
+			byte[] ... inputs) {
+		return signDigest(privateKey, sha256Digest(inputs), deterministic);
+	}
+
+	/*
+	 * A new signer for every call, it keeps the private key (and the
+	 * HMAC-DRBG state derived from it) as long as it is reachable.
+	 */
+	private static ECDSASigner createSigner(byte[] privateKey,
+			boolean deterministic) {
 		BigInteger keyInt = new BigInteger(1, privateKey);
 
 		ECPrivateKeyParameters keyParams = new ECPrivateKeyParameters(
 				keyInt, CURVE);
 
-		ECDSASigner signer = new ECDSASigner(
-				new RandomDSAKCalculator());
-		signer.init(true, keyParams);
+		ECDSASigner signer;
+		if (deterministic) {
+			signer = new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest()));
+			signer.init(true, keyParams);
+		} else {
+			// Without a random, every init creates a new SecureRandom
+			signer = new ECDSASigner(new RandomDSAKCalculator());
+			signer.init(true, new ParametersWithRandom(keyParams,
+					randoms.get()));
+		}
+
+		return signer;
+	}
 
-		BigInteger[] rs = signer.generateSignature(sha256Digest(inputs));
+	public static byte[] signDigest(byte[] privateKey, byte[] digest,
+			boolean deterministic) {
+		ECDSASigner signer = createSigner(privateKey, deterministic);
+		return toSignature(signer.generateSignature(digest));
+	}
+
+	public static byte[] signDigest(byte[] privateKey, byte[] digest) {
+		return signDigest(privateKey, digest, false);
+	}
 
+	/*
+	 * Sign every input (the parts of one input are hashed together) with
+	 * the same key, the key parameters and the signer are reused.
+	 */
+	public static List<byte[]> signAll(byte[] privateKey, List<byte[][]> inputs,
+			boolean deterministic) {
+		ECDSASigner signer = createSigner(privateKey, deterministic);
+
+		List<byte[]> sigs = new ArrayList<byte[]>(inputs.size());
+		for (byte[][] input : inputs)
+			sigs.add(toSignature(signer.generateSignature(sha256Digest(input))));
+
+		return sigs;
+	}
+
+	public static List<byte[]> signAll(byte[] privateKey, List<byte[][]> inputs) {
+		return signAll(privateKey, inputs, false);
+	}
+
+	private static byte[] toSignature(BigInteger[] rs) {
 		byte[] r = bigIntegerToBytes(rs[0], 32);
 		byte[] s = bigIntegerToBytes(rs[1], 32);
 
@@ -72,18 +195,31 @@ public class EcdsaSigner {
 	}
 
 	public static boolean verify(byte[] publicKey, byte[] sig, byte[] ... inputs) {
+		return verifyDigest(publicKey, sig, sha256Digest(inputs));
+	}
+
+	public static boolean verify(VerificationKey key, byte[] sig, byte[] ... inputs) {
+		return verifyDigest(key, sig, sha256Digest(inputs));
+	}
+
+	public static boolean verifyDigest(byte[] publicKey, byte[] sig, byte[] digest) {
 		if (sig.length != 64) {
 			return false;
 		}
 
-		X9ECParameters curve = SECNamedCurves.getByName(CURVE_ALGORITHM);
-		ECPublicKeyParameters keyParams = new ECPublicKeyParameters(
-				curve.getCurve().decodePoint(publicKey), CURVE);
+		return verifyDigest(new VerificationKey(publicKey), sig, digest);
+	}
+
+	public static boolean verifyDigest(VerificationKey key, byte[] sig, byte[] digest) {
+		if (sig.length != 64) {
+			return false;
+		}
 
-		ECDSASigner signer = new ECDSASigner(
-				new RandomDSAKCalculator());
-		signer.init(false, keyParams);
+		return SignatureCache.verify(key.publicKey, digest, sig,
+				() -> doVerify(key, sig, digest));
+	}
 
+	private static boolean doVerify(VerificationKey key, byte[] sig, byte[] digest) {
 		byte rb[] = new byte[sig.length / 2];
 		byte sb[] = new byte[sig.length / 2];
 		System.arraycopy(sig, 0, rb, 0, rb.length);
@@ -91,7 +227,46 @@ public class EcdsaSigner {
 		BigInteger r = parseBigIntegerPositive(new BigInteger(rb), rb.length * 8);
 		BigInteger s = parseBigIntegerPositive(new BigInteger(sb), rb.length * 8);
 
-		return signer.verifySignature(sha256Digest(inputs), r, s);
+		ECPoint table = PrecomputedKeys.lookup(key.publicKey);
+		if (table != null)
+			return verifyPrecomputed(table, digest, r, s);
+
+		ECDSASigner signer = new ECDSASigner();
+		signer.init(false, key.keyParams);
+		return signer.verifySignature(digest, r, s);
+	}
+
+	/*
+	 * ECDSA verification with the fixed-point comb tables of both G and
+	 * the public key, instead of the generic Shamir's trick.
+	 */
+	private static boolean verifyPrecomputed(ECPoint q, byte[] digest,
+			BigInteger r, BigInteger s) {
+		BigInteger n = CURVE.getN();
+
+		if (r.signum() <= 0 || r.compareTo(n) >= 0)
+			return false;
+
+		if (s.signum() <= 0 || s.compareTo(n) >= 0)
+			return false;
+
+		// Same as ECDSASigner.calculateE
+		BigInteger e = new BigInteger(1, digest);
+		int bits = digest.length * 8;
+		if (n.bitLength() < bits)
+			e = e.shiftRight(bits - n.bitLength());
+
+		BigInteger c = s.modInverse(n);
+		BigInteger u1 = e.multiply(c).mod(n);
+		BigInteger u2 = r.multiply(c).mod(n);
+
+		ECMultiplier multiplier = new FixedPointCombMultiplier();
+		ECPoint point = multiplier.multiply(CURVE.getG(), u1)
+				.add(multiplier.multiply(q, u2)).normalize();
+		if (point.isInfinity())
+			return false;
+
+		return point.getAffineXCoord().toBigInteger().mod(n).equals(r);
 	}
 
 	private static byte[] sha256Digest(byte[] ... inputs) {
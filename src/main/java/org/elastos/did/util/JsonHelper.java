@@ -23,14 +23,15 @@
 package org.elastos.did.util;
 
 import java.io.IOException;
-import java.lang.reflect.Constructor;
 import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 
 import org.elastos.did.Constants;
 import org.elastos.did.DID;
@@ -39,106 +40,128 @@ import org.elastos.did.exception.DIDException;
 import org.elastos.did.exception.MalformedDIDException;
 import org.elastos.did.exception.MalformedDIDURLException;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class JsonHelper {
-	private final static SimpleDateFormat dateFormat =
-			new SimpleDateFormat(Constants.DATE_FORMAT);
+	// SimpleDateFormat is not thread-safe, only used for the unusual dates
+	private final static ThreadLocal<SimpleDateFormat> dateFormat =
+			new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return createDateFormat(Constants.DATE_FORMAT);
+		}
+	};
+
+	private final static ThreadLocal<SimpleDateFormat> isoDateFormat =
+			new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return createDateFormat(Constants.DATE_FORMAT_ISO_8601);
+		}
+	};
+
+	// Dates in this year range use the hand-written codec
+	private final static int MIN_YEAR = 1600;
+	private final static int MAX_YEAR = 9999;
 
-	private final static SimpleDateFormat isoDateFormat =
-			new SimpleDateFormat(Constants.DATE_FORMAT_ISO_8601);
+	private final static long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
 
-	static {
-		dateFormat.setTimeZone(Constants.UTC);
-		isoDateFormat.setTimeZone(Constants.UTC);
+	/*
+	 * Shared Jackson instances. Both are thread-safe once configured and
+	 * much cheaper to reuse than to create, they also keep the symbol
+	 * tables and buffers recycled across calls. Callers must not change
+	 * the configuration of the shared instances.
+	 */
+	private final static JsonFactory factory = new JsonFactory();
+	private final static ObjectMapper mapper = new ObjectMapper(factory);
+
+	public static JsonFactory getJsonFactory() {
+		return factory;
 	}
 
-	static class ExceptionFactory {
-		static public <E> E create(Class<E> clazz, String msg) {
-			try {
-				Constructor<E> ctor = clazz.getConstructor(String.class);
-				return ctor.newInstance(msg);
-			} catch (Exception e) {
-				throw new RuntimeException("Can't instantiate object: "
-						+ clazz.getCanonicalName());
-			}
-		}
+	public static ObjectMapper getObjectMapper() {
+		return mapper;
+	}
 
-		static public <E> E create(Class<E> clazz, String msg, Exception e) {
-			try {
-				Constructor<E> ctor = clazz.getDeclaredConstructor(
-						String.class, Throwable.class);
-				return ctor.newInstance(msg, e);
-			} catch (Exception ex) {
-				ex.printStackTrace();
-				throw new RuntimeException("Can't instantiate object: "
-						+ clazz.getCanonicalName());
-			}
+	/*
+	 * Creates the exception for the malformed values, normally the
+	 * constructor reference of the exception class, XxxException::new.
+	 */
+	@FunctionalInterface
+	public interface ExceptionFactory<E extends DIDException> {
+		public E create(String message, Throwable cause);
+
+		default public E create(String message) {
+			return create(message, null);
 		}
 	}
 
 	public static <E extends DIDException> String getString(JsonNode node,
 			String name, boolean optional, String ref, String hint,
-			Class<E> exceptionClass) throws E {
+			ExceptionFactory<E> exceptionFactory) throws E {
 		JsonNode vn = node.get(name);
 		if (vn == null) {
 			if (optional)
 				return ref;
 			else
-				throw ExceptionFactory.create(exceptionClass, "Missing " + hint + ".");
+				throw exceptionFactory.create("Missing " + hint + ".");
 		}
 
 		if (!vn.isTextual())
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + " value.");
+			throw exceptionFactory.create("Invalid " + hint + " value.");
 
 		String value = vn.asText();
 		if (value == null || value.isEmpty())
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + " value.");
+			throw exceptionFactory.create("Invalid " + hint + " value.");
 
 		return value;
 	}
 
 	public static <E extends DIDException> int getInteger(JsonNode node,
 			String name, boolean optional, int ref, String hint,
-			Class<E> exceptionClass) throws E {
+			ExceptionFactory<E> exceptionFactory) throws E {
 		JsonNode vn = node.get(name);
 		if (vn == null) {
 			if (optional)
 				return ref;
 			else
-				throw ExceptionFactory.create(exceptionClass, "Missing " + hint + ".");
+				throw exceptionFactory.create("Missing " + hint + ".");
 		}
 
 		if (!vn.isNumber())
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + " value.");
+			throw exceptionFactory.create("Invalid " + hint + " value.");
 
 		return vn.asInt(ref);
 	}
 
 	public static <E extends DIDException> DID getDid(JsonNode node,
 			String name, boolean optional, DID ref, String hint,
-			Class<E> exceptionClass) throws E {
+			ExceptionFactory<E> exceptionFactory) throws E {
 		JsonNode vn = node.get(name);
 		if (vn == null) {
 			if (optional)
 				return ref;
 			else
-				throw ExceptionFactory.create(exceptionClass, "Missing " + hint + ".");
+				throw exceptionFactory.create("Missing " + hint + ".");
 		}
 
 		if (!vn.isTextual())
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + " value.");
+			throw exceptionFactory.create("Invalid " + hint + " value.");
 
 		String value = vn.asText();
 		if (value == null || value.isEmpty())
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + " value.");
+			throw exceptionFactory.create("Invalid " + hint + " value.");
 
 		DID id;
 		try {
 			id = new DID(value);
 		} catch (MalformedDIDException e) {
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + ": " + value, e);
+			throw exceptionFactory.create("Invalid " + hint + ": " + value, e);
 		}
 
 		return id;
@@ -146,21 +169,21 @@ public class JsonHelper {
 
 	public static <E extends DIDException> DIDURL getDidUrl(JsonNode node,
 			String name, boolean optional, DID ref, String hint,
-			Class<E> exceptionClass) throws E {
+			ExceptionFactory<E> exceptionFactory) throws E {
 		JsonNode vn = node.get(name);
 		if (vn == null) {
 			if (optional)
 				return null;
 			else
-				throw ExceptionFactory.create(exceptionClass, "Missing " + hint + ".");
+				throw exceptionFactory.create("Missing " + hint + ".");
 		}
 
 		if (!vn.isTextual())
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + " value.");
+			throw exceptionFactory.create("Invalid " + hint + " value.");
 
 		String value = vn.asText();
 		if (value == null || value.isEmpty())
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + " value.");
+			throw exceptionFactory.create("Invalid " + hint + " value.");
 
 		DIDURL id;
 		try {
@@ -169,7 +192,7 @@ public class JsonHelper {
 			else
 				id = new DIDURL(value);
 		} catch (MalformedDIDURLException e) {
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + ": " + value, e);
+			throw exceptionFactory.create("Invalid " + hint + ": " + value, e);
 		}
 
 		return id;
@@ -177,18 +200,18 @@ public class JsonHelper {
 
 	public static <E extends DIDException> DIDURL getDidUrl(JsonNode node,
 			String name, DID ref, String hint,
-			Class<E> exceptionClass) throws E {
-		return getDidUrl(node, name, false, ref, hint, exceptionClass);
+			ExceptionFactory<E> exceptionFactory) throws E {
+		return getDidUrl(node, name, false, ref, hint, exceptionFactory);
 	}
 
 	public static <E extends DIDException> DIDURL getDidUrl(JsonNode node,
-			DID ref, String hint, Class<E> exceptionClass) throws E {
+			DID ref, String hint, ExceptionFactory<E> exceptionFactory) throws E {
 		if (node == null || !node.isTextual())
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + " value.");
+			throw exceptionFactory.create("Invalid " + hint + " value.");
 
 		String value = node.asText();
 		if (value == null || value.isEmpty())
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + " value.");
+			throw exceptionFactory.create("Invalid " + hint + " value.");
 
 		DIDURL id;
 		try {
@@ -197,7 +220,7 @@ public class JsonHelper {
 			else
 				id = new DIDURL(value);
 		} catch (MalformedDIDURLException e) {
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + ": " + value, e);
+			throw exceptionFactory.create("Invalid " + hint + ": " + value, e);
 		}
 
 		return id;
@@ -205,26 +228,71 @@ public class JsonHelper {
 
 	public static <E extends DIDException> Date getDate(JsonNode node,
 			String name, boolean optional, Date ref, String hint,
-			Class<E> exceptionClass) throws E {
+			ExceptionFactory<E> exceptionFactory) throws E {
 		JsonNode vn = node.get(name);
 		if (vn == null) {
 			if (optional)
 				return ref;
 			else
-				throw ExceptionFactory.create(exceptionClass, "Missing " + hint + ".");
+				throw exceptionFactory.create("Missing " + hint + ".");
 		}
 
 		if (!vn.isTextual())
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + " value.");
+			throw exceptionFactory.create("Invalid " + hint + " value.");
 
 		String value = vn.asText();
 		if (value == null || value.isEmpty())
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + " value.");
+			throw exceptionFactory.create("Invalid " + hint + " value.");
+
+		try {
+			return parseDate(value);
+		} catch (ParseException e) {
+			throw exceptionFactory.create("Invalid " + hint + ": " + value, e);
+		}
+	}
+
+	/*
+	 * Streaming variants, the parser should be positioned at the value.
+	 */
+	public static <E extends DIDException> String getString(JsonParser parser,
+			String hint, ExceptionFactory<E> exceptionFactory) throws E, IOException {
+		if (parser.getCurrentToken() != JsonToken.VALUE_STRING)
+			throw exceptionFactory.create("Invalid " + hint + " value.");
+
+		String value = parser.getText();
+		if (value == null || value.isEmpty())
+			throw exceptionFactory.create("Invalid " + hint + " value.");
+
+		return value;
+	}
+
+	public static <E extends DIDException> int getInteger(JsonParser parser,
+			String hint, ExceptionFactory<E> exceptionFactory) throws E, IOException {
+		if (!parser.getCurrentToken().isNumeric())
+			throw exceptionFactory.create("Invalid " + hint + " value.");
+
+		return parser.getValueAsInt();
+	}
+
+	public static <E extends DIDException> DID getDid(JsonParser parser,
+			String hint, ExceptionFactory<E> exceptionFactory) throws E, IOException {
+		String value = getString(parser, hint, exceptionFactory);
+
+		try {
+			return new DID(value);
+		} catch (MalformedDIDException e) {
+			throw exceptionFactory.create("Invalid " + hint + ": " + value, e);
+		}
+	}
+
+	public static <E extends DIDException> Date getDate(JsonParser parser,
+			String hint, ExceptionFactory<E> exceptionFactory) throws E, IOException {
+		String value = getString(parser, hint, exceptionFactory);
 
 		try {
 			return parseDate(value);
 		} catch (ParseException e) {
-			throw ExceptionFactory.create(exceptionClass, "Invalid " + hint + ": " + value, e);
+			throw exceptionFactory.create("Invalid " + hint + ": " + value, e);
 		}
 	}
 
@@ -291,17 +359,153 @@ public class JsonHelper {
 		}
 	}
 
-	public static String formatDate(Date date) {
-		return dateFormat.format(date);
+	private static SimpleDateFormat createDateFormat(String pattern) {
+		SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+		format.setTimeZone(Constants.UTC);
+		return format;
 	}
 
-	public static Date parseDate(String dataStr) throws ParseException {
-		try {
-			return dateFormat.parse(dataStr);
-		} catch (ParseException ignore) {
+	// Days since 1970-01-01 of the proleptic Gregorian date
+	private static long toEpochDay(int year, int month, int day) {
+		year -= month <= 2 ? 1 : 0;
+		long era = year / 400;
+		long yoe = year - era * 400;
+		long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+			return leap ? 29 : 28;
+
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+
+		default:
+			return 31;
 		}
+	}
+
+	private static int parseDigits(String str, int offset, int count) {
+		int value = 0;
+		for (int i = offset; i < offset + count; i++) {
+			char ch = str.charAt(i);
+			if (ch < '0' || ch > '9')
+				return -1;
+
+			value = value * 10 + (ch - '0');
+		}
+
+		return value;
+	}
+
+	private static void formatDigits(char[] buf, int offset, int count, int value) {
+		for (int i = offset + count - 1; i >= offset; i--) {
+			buf[i] = (char)('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	/*
+	 * Parse the exact yyyy-MM-ddTHH:mm:ssZ and yyyy-MM-ddTHH:mm:ss.SSSZ
+	 * forms with the fields in the normal ranges. Returns Long.MIN_VALUE
+	 * for anything else, which is left to SimpleDateFormat.
+	 */
+	private static long parseDateFast(String str) {
+		int len = str.length();
+		if (len != 20 && len != 24)
+			return Long.MIN_VALUE;
+
+		if (str.charAt(4) != '-' || str.charAt(7) != '-' ||
+				str.charAt(10) != 'T' || str.charAt(13) != ':' ||
+				str.charAt(16) != ':' || str.charAt(len - 1) != 'Z')
+			return Long.MIN_VALUE;
+
+		int year = parseDigits(str, 0, 4);
+		int month = parseDigits(str, 5, 2);
+		int day = parseDigits(str, 8, 2);
+		int hour = parseDigits(str, 11, 2);
+		int minute = parseDigits(str, 14, 2);
+		int second = parseDigits(str, 17, 2);
+		int millis = 0;
+		if (len == 24) {
+			if (str.charAt(19) != '.')
+				return Long.MIN_VALUE;
+
+			millis = parseDigits(str, 20, 3);
+		}
+
+		if (year < MIN_YEAR || year > MAX_YEAR || month < 1 || month > 12 ||
+				day < 1 || day > daysInMonth(year, month) ||
+				hour < 0 || hour > 23 || minute < 0 || minute > 59 ||
+				second < 0 || second > 59 || millis < 0)
+			return Long.MIN_VALUE;
+
+		return toEpochDay(year, month, day) * MILLIS_PER_DAY +
+				((hour * 60 + minute) * 60 + second) * 1000L + millis;
+	}
+
+	public static String formatDate(Date date) {
+		long time = date.getTime();
+		long days = Math.floorDiv(time, MILLIS_PER_DAY);
+		int seconds = (int)(Math.floorMod(time, MILLIS_PER_DAY) / 1000);
+
+		// Civil date from the epoch day
+		long z = days + 719468;
+		long era = Math.floorDiv(z, 146097);
+		long doe = z - era * 146097;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		int day = (int)(doy - (153 * mp + 2) / 5 + 1);
+		int month = (int)(mp < 10 ? mp + 3 : mp - 9);
+		long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+		if (year < MIN_YEAR || year > MAX_YEAR)
+			return dateFormat.get().format(date);
+
+		char[] buf = new char[20];
+		formatDigits(buf, 0, 4, (int)year);
+		buf[4] = '-';
+		formatDigits(buf, 5, 2, month);
+		buf[7] = '-';
+		formatDigits(buf, 8, 2, day);
+		buf[10] = 'T';
+		formatDigits(buf, 11, 2, seconds / 3600);
+		buf[13] = ':';
+		formatDigits(buf, 14, 2, seconds / 60 % 60);
+		buf[16] = ':';
+		formatDigits(buf, 17, 2, seconds % 60);
+		buf[19] = 'Z';
+
+		return new String(buf);
+	}
+
+	public static Date parseDate(String dateStr) throws ParseException {
+		long time = parseDateFast(dateStr);
+		if (time != Long.MIN_VALUE)
+			return new Date(time);
+
+		// Lenient SimpleDateFormat for the unusual inputs, no exceptions
+		ParsePosition pos = new ParsePosition(0);
+		Date date = dateFormat.get().parse(dateStr, pos);
+		if (date != null)
+			return date;
 
 		// Failback to ISO 8601 format.
-		return isoDateFormat.parse(dataStr);
+		pos.setIndex(0);
+		pos.setErrorIndex(-1);
+		date = isoDateFormat.get().parse(dateStr, pos);
+		if (date != null)
+			return date;
+
+		throw new ParseException("Unparseable date: \"" + dateStr + "\"",
+				pos.getErrorIndex());
 	}
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.elastos.did.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.spongycastle.math.ec.ECPoint;
+import org.spongycastle.math.ec.FixedPointUtil;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+
+/*
+ * Optional fixed-point comb tables for the frequently used verification
+ * keys, e.g. the keys of the hot issuers. A table is built once a key
+ * was used threshold times and kept in a LRU limited by the estimated
+ * memory of the tables. Disabled by default.
+ */
+public class PrecomputedKeys {
+	public static final int DEFAULT_WIDTH = 8;
+	// FixedPointCombMultiplier rebuilds narrower tables for 256-bit curves
+	public static final int MIN_WIDTH = 5;
+	public static final int MAX_WIDTH = 16;
+	public static final int DEFAULT_THRESHOLD = 16;
+
+	// Estimated heap size of one precomputed secp256r1 point in bytes
+	private static final int POINT_SIZE = 200;
+
+	private static volatile State state;
+
+	private static LongAdder hits = new LongAdder();
+	private static LongAdder misses = new LongAdder();
+	private static LongAdder precomputations = new LongAdder();
+	private static LongAdder evictions = new LongAdder();
+
+	private static class State {
+		private int width;
+		private int threshold;
+		private Cache<ByteBuffer, ECPoint> tables;
+		private Cache<ByteBuffer, AtomicInteger> uses;
+
+		private State(long maxBytes, int width, int threshold) {
+			this.width = width;
+			this.threshold = threshold;
+
+			int weight = getTableSize(width);
+			RemovalListener<ByteBuffer, ECPoint> listener = (notification) -> {
+				if (notification.wasEvicted())
+					evictions.increment();
+			};
+
+			// One segment, otherwise the budget is split across segments
+			tables = CacheBuilder.newBuilder().concurrencyLevel(1)
+					.maximumWeight(maxBytes)
+					.weigher((ByteBuffer k, ECPoint v) -> weight)
+					.removalListener(listener).build();
+
+			// Track the use counts of some more keys than the tables
+			uses = CacheBuilder.newBuilder()
+					.maximumSize(Math.max(1024, maxBytes / weight * 4))
+					.build();
+		}
+	}
+
+	public static class Statistics {
+		private long hitCount;
+		private long missCount;
+		private long precomputeCount;
+		private long evictionCount;
+		private long size;
+		private long memory;
+
+		private Statistics(long hitCount, long missCount, long precomputeCount,
+				long evictionCount, long size, long memory) {
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.precomputeCount = precomputeCount;
+			this.evictionCount = evictionCount;
+			this.size = size;
+			this.memory = memory;
+		}
+
+		// Verifications that used a precomputed table
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		public long getMissCount() {
+			return missCount;
+		}
+
+		public long getPrecomputeCount() {
+			return precomputeCount;
+		}
+
+		public long getEvictionCount() {
+			return evictionCount;
+		}
+
+		// Number of cached tables
+		public long getSize() {
+			return size;
+		}
+
+		// Estimated memory of the cached tables in bytes
+		public long getMemory() {
+			return memory;
+		}
+
+		public double getHitRate() {
+			long total = hitCount + missCount;
+			return total == 0 ? 0.0 : (double)hitCount / total;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("hits: %d, misses: %d, precomputes: %d, "
+					+ "evictions: %d, size: %d, memory: %d",
+					hitCount, missCount, precomputeCount, evictionCount,
+					size, memory);
+		}
+	}
+
+	// Estimated memory of one table with the given comb width in bytes
+	public static int getTableSize(int width) {
+		return ((1 << width) + 1) * POINT_SIZE;
+	}
+
+	/*
+	 * Enable the tables, limited to maxBytes of estimated memory, 0 to
+	 * disable. width is the comb width from MIN_WIDTH to MAX_WIDTH, each
+	 * table holds 2^width points. A key gets its table after threshold
+	 * verifications.
+	 */
+	public static void configure(long maxBytes, int width, int threshold) {
+		if (maxBytes < 0 || width < MIN_WIDTH || width > MAX_WIDTH ||
+				threshold < 1)
+			throw new IllegalArgumentException();
+
+		state = maxBytes == 0 ? null : new State(maxBytes, width, threshold);
+	}
+
+	public static void configure(long maxBytes) {
+		configure(maxBytes, DEFAULT_WIDTH, DEFAULT_THRESHOLD);
+	}
+
+	public static boolean isEnabled() {
+		return state != null;
+	}
+
+	public static Statistics getStatistics() {
+		State state = PrecomputedKeys.state;
+		long size = state == null ? 0 : state.tables.size();
+		long memory = state == null ? 0 : size * getTableSize(state.width);
+
+		return new Statistics(hits.sum(), misses.sum(), precomputations.sum(),
+				evictions.sum(), size, memory);
+	}
+
+	public static void resetStatistics() {
+		hits.reset();
+		misses.reset();
+		precomputations.reset();
+		evictions.reset();
+	}
+
+	/*
+	 * Returns the precomputed point of the public key, or null if the key
+	 * is not hot yet. The publicKey array should not be modified later.
+	 */
+	protected static ECPoint lookup(byte[] publicKey) {
+		State state = PrecomputedKeys.state;
+		if (state == null)
+			return null;
+
+		ByteBuffer key = ByteBuffer.wrap(publicKey);
+		ECPoint point = state.tables.getIfPresent(key);
+		if (point != null) {
+			hits.increment();
+			return point;
+		}
+
+		misses.increment();
+
+		AtomicInteger count = state.uses.asMap().computeIfAbsent(key,
+				(k) -> new AtomicInteger());
+		if (count.incrementAndGet() != state.threshold)
+			return null;
+
+		// A private point instance, the table is attached to it
+		point = EcdsaSigner.CURVE.getCurve().decodePoint(publicKey).normalize();
+		FixedPointUtil.precompute(point, state.width);
+		state.tables.put(key, point);
+		state.uses.invalidate(key);
+		precomputations.increment();
+
+		return point;
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.elastos.did.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.spongycastle.crypto.digests.SHA256Digest;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+
+/*
+ * Optional process-wide cache of the successful signature verifications,
+ * keyed by SHA-256(public key || digest || signature). Only positive
+ * results are cached, a failed verification is always re-evaluated.
+ * Disabled by default.
+ */
+public class SignatureCache {
+	public static final long DEFAULT_MAX_ENTRIES = 0;
+
+	private static volatile Cache<ByteBuffer, Boolean> cache;
+
+	private static LongAdder hits = new LongAdder();
+	private static LongAdder misses = new LongAdder();
+	private static LongAdder evictions = new LongAdder();
+
+	public static class Statistics {
+		private long hitCount;
+		private long missCount;
+		private long evictionCount;
+		private long size;
+
+		private Statistics(long hitCount, long missCount,
+				long evictionCount, long size) {
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.evictionCount = evictionCount;
+			this.size = size;
+		}
+
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		public long getMissCount() {
+			return missCount;
+		}
+
+		public long getEvictionCount() {
+			return evictionCount;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public double getHitRate() {
+			long total = hitCount + missCount;
+			return total == 0 ? 0.0 : (double)hitCount / total;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("hits: %d, misses: %d, evictions: %d, size: %d",
+					hitCount, missCount, evictionCount, size);
+		}
+	}
+
+	/*
+	 * Enable the cache with at most maxEntries verified signatures,
+	 * 0 to disable. The cached entries are dropped.
+	 */
+	public static void configure(long maxEntries) {
+		if (maxEntries < 0)
+			throw new IllegalArgumentException();
+
+		if (maxEntries == 0) {
+			cache = null;
+			return;
+		}
+
+		RemovalListener<ByteBuffer, Boolean> listener = (notification) -> {
+			if (notification.wasEvicted())
+				evictions.increment();
+		};
+
+		cache = CacheBuilder.newBuilder().maximumSize(maxEntries)
+				.removalListener(listener).build();
+	}
+
+	public static boolean isEnabled() {
+		return cache != null;
+	}
+
+	public static void reset() {
+		Cache<ByteBuffer, Boolean> cache = SignatureCache.cache;
+		if (cache != null)
+			cache.invalidateAll();
+	}
+
+	public static Statistics getStatistics() {
+		Cache<ByteBuffer, Boolean> cache = SignatureCache.cache;
+		return new Statistics(hits.sum(), misses.sum(), evictions.sum(),
+				cache == null ? 0 : cache.size());
+	}
+
+	public static void resetStatistics() {
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+
+	private static ByteBuffer key(byte[] publicKey, byte[] digest, byte[] sig) {
+		SHA256Digest sha256 = new SHA256Digest();
+		sha256.update(publicKey, 0, publicKey.length);
+		sha256.update(digest, 0, digest.length);
+		sha256.update(sig, 0, sig.length);
+
+		byte[] key = new byte[32];
+		sha256.doFinal(key, 0);
+		return ByteBuffer.wrap(key);
+	}
+
+	/*
+	 * Verify the signature, the verifier is only called on cache misses
+	 * and its positive result is cached.
+	 */
+	protected static boolean verify(byte[] publicKey, byte[] digest,
+			byte[] sig, Verifier verifier) {
+		Cache<ByteBuffer, Boolean> cache = SignatureCache.cache;
+		if (cache == null)
+			return verifier.verify();
+
+		ByteBuffer key = key(publicKey, digest, sig);
+		if (cache.getIfPresent(key) != null) {
+			hits.increment();
+			return true;
+		}
+
+		misses.increment();
+
+		boolean result = verifier.verify();
+		if (result)
+			cache.put(key, Boolean.TRUE);
+
+		return result;
+	}
+
+	@FunctionalInterface
+	protected interface Verifier {
+		boolean verify();
+	}
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elastos.did.adapter.DummyAdapter;
+import org.elastos.did.backend.AsyncResolver;
+import org.elastos.did.backend.ResolverCache;
+import org.elastos.did.exception.DIDException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class DIDBackendTest {
+	private static final int THREADS = 8;
+	private static final int REQUESTS = 2000;
+
+	private TestData testData;
+	private DIDStore store;
+	private StubResolverServer server;
+
+	@BeforeEach
+	public void setup() throws DIDException, IOException {
+		testData = new TestData();
+		store = testData.setup(true);
+		testData.initIdentity();
+	}
+
+	@AfterEach
+	public void cleanup() {
+		if (server != null)
+			server.stop();
+	}
+
+	private static String consume(InputStream is) throws IOException {
+		StringBuilder sb = new StringBuilder(1024);
+		int ch;
+		while ((ch = is.read()) != -1)
+			sb.append((char)ch);
+		is.close();
+
+		return sb.toString();
+	}
+
+	@Test
+	public void testAsyncResolver() throws Exception {
+		server = new StubResolverServer((DIDResolver)testData.getAdapter(),
+				THREADS);
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		store.publishDid(doc.getSubject(), TestConfig.storePass);
+
+		DIDBackend.initialize(server.getUrl(), THREADS, 5000,
+				TestData.getResolverCacheDir());
+		ResolverCache.reset();
+
+		DIDDocument resolved = doc.getSubject().resolve(true);
+		assertNotNull(resolved);
+		assertEquals(doc.getSubject(), resolved.getSubject());
+		assertEquals(doc.getProof().getSignature(),
+				resolved.getProof().getSignature());
+		assertTrue(resolved.isValid());
+
+		AsyncResolver resolver = new AsyncResolver(server.getUrl());
+		CompletableFuture<InputStream> future = resolver.resolveAsync(
+				"0123456789", "did:elastos:iWFAUYhTa35c1fPe3iCJvihZHx6quumnym", false);
+		JsonNode node = new ObjectMapper().readTree(future.get());
+		assertEquals("0123456789", node.get("id").asText());
+		assertEquals(3, node.get("result").get("status").asInt());
+
+		DID did = new DID("did:elastos:iWFAUYhTa35c1fPe3iCJvihZHx6quumnym");
+		assertNull(did.resolve(true));
+	}
+
+	private long measure(DIDResolver resolver) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<Future<?>>(THREADS);
+
+		long start = System.nanoTime();
+		for (int t = 0; t < THREADS; t++) {
+			final int thread = t;
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < REQUESTS / THREADS; i++) {
+					String id = thread + "-" + i;
+					String json = consume(resolver.resolve(id,
+							"did:elastos:iWFAUYhTa35c1fPe3iCJvihZHx6quumnym", false));
+					assertTrue(json.contains(id));
+				}
+
+				return null;
+			}));
+		}
+
+		for (Future<?> f : futures)
+			f.get();
+		long duration = System.nanoTime() - start;
+
+		executor.shutdown();
+		return duration;
+	}
+
+	@Test
+	public void testResolverThroughput() throws Exception {
+		server = new StubResolverServer(new DummyAdapter(), THREADS);
+
+		DIDResolver defaultResolver = new DIDBackend.DefaultResolver(server.getUrl());
+		DIDResolver asyncResolver = new AsyncResolver(server.getUrl(), THREADS, 5000);
+
+		// Warm up
+		measure(defaultResolver);
+		measure(asyncResolver);
+
+		server.resetRequests();
+		long defaultTime = measure(defaultResolver);
+		assertEquals(REQUESTS, server.getRequests());
+
+		server.resetRequests();
+		long asyncTime = measure(asyncResolver);
+		assertEquals(REQUESTS, server.getRequests());
+
+		System.out.format("Resolver throughput(%d threads): default %.0f req/s, async %.0f req/s\n",
+				THREADS, REQUESTS * 1e9 / defaultTime, REQUESTS * 1e9 / asyncTime);
+	}
+
+	@Test
+	public void testBatchResolve() throws Exception {
+		server = new StubResolverServer((DIDResolver)testData.getAdapter(),
+				THREADS);
+
+		List<DID> dids = new ArrayList<DID>();
+		for (int i = 0; i < 3; i++) {
+			DIDDocument doc = store.newDid(TestConfig.storePass);
+			store.publishDid(doc.getSubject(), TestConfig.storePass);
+			dids.add(doc.getSubject());
+		}
+		DID unknown = new DID("did:elastos:iWFAUYhTa35c1fPe3iCJvihZHx6quumnym");
+		dids.add(unknown);
+
+		// Fallback to the per DID requests
+		Map<DID, DIDDocument> docs = DIDBackend.resolve(dids, true);
+		assertEquals(4, docs.size());
+		assertNull(docs.get(unknown));
+
+		DIDBackend.initialize(server.getUrl(), THREADS, 5000,
+				TestData.getResolverCacheDir());
+		ResolverCache.reset();
+
+		docs = DIDBackend.resolve(dids);
+		assertEquals(1, server.getRequests());
+		assertEquals(4, docs.size());
+		for (int i = 0; i < 3; i++) {
+			DIDDocument doc = docs.get(dids.get(i));
+			assertNotNull(doc);
+			assertEquals(dids.get(i), doc.getSubject());
+			assertTrue(doc.isValid());
+		}
+		assertTrue(docs.containsKey(unknown));
+		assertNull(docs.get(unknown));
+
+		// Should be cached
+		for (int i = 0; i < 3; i++)
+			assertNotNull(dids.get(i).resolve());
+		assertEquals(1, server.getRequests());
+	}
+
+	@Test
+	public void testBatchResolveRejected() throws Exception {
+		server = new StubResolverServer((DIDResolver)testData.getAdapter(),
+				THREADS);
+		server.setBatchSupported(false);
+
+		List<DID> dids = new ArrayList<DID>();
+		for (int i = 0; i < 3; i++) {
+			DIDDocument doc = store.newDid(TestConfig.storePass);
+			store.publishDid(doc.getSubject(), TestConfig.storePass);
+			dids.add(doc.getSubject());
+		}
+
+		DIDBackend.initialize(server.getUrl(), THREADS, 5000,
+				TestData.getResolverCacheDir());
+		ResolverCache.reset();
+
+		// The rejected batch falls back to the per DID requests
+		Map<DID, DIDDocument> docs = DIDBackend.resolve(dids, true);
+		assertEquals(4, server.getRequests());
+		assertEquals(3, docs.size());
+		for (DID did : dids)
+			assertEquals(did, docs.get(did).getSubject());
+
+		// And is not tried again
+		server.resetRequests();
+		docs = DIDBackend.resolve(dids, true);
+		assertEquals(3, server.getRequests());
+		assertEquals(3, docs.size());
+	}
+
+	@Test
+	public void testBatchResolveFailed() throws Exception {
+		server = new StubResolverServer((DIDResolver)testData.getAdapter(),
+				THREADS);
+		server.failBatches(1);
+
+		List<DID> dids = new ArrayList<DID>();
+		for (int i = 0; i < 3; i++) {
+			DIDDocument doc = store.newDid(TestConfig.storePass);
+			store.publishDid(doc.getSubject(), TestConfig.storePass);
+			dids.add(doc.getSubject());
+		}
+
+		DIDBackend.initialize(server.getUrl(), THREADS, 5000,
+				TestData.getResolverCacheDir());
+		ResolverCache.reset();
+
+		// The failed batch falls back to the per DID requests
+		Map<DID, DIDDocument> docs = DIDBackend.resolve(dids, true);
+		assertEquals(4, server.getRequests());
+		assertEquals(3, docs.size());
+		for (DID did : dids)
+			assertEquals(did, docs.get(did).getSubject());
+
+		// But a transient failure doesn't turn the batches off
+		server.resetRequests();
+		docs = DIDBackend.resolve(dids, true);
+		assertEquals(1, server.getRequests());
+		assertEquals(3, docs.size());
+	}
+
+	@Test
+	public void testBatchResolvePerformance() throws Exception {
+		final int DIDS = 20;
+		final int ROUNDS = 10;
+
+		server = new StubResolverServer(new DummyAdapter(), THREADS);
+		server.setLatency(2);
+		DIDBackend.initialize(server.getUrl(), THREADS, 5000,
+				TestData.getResolverCacheDir());
+
+		List<DID> dids = new ArrayList<DID>(DIDS);
+		for (int i = 0; i < DIDS; i++)
+			dids.add(store.getDid(i, TestConfig.storePass));
+
+		long start = System.nanoTime();
+		for (int r = 0; r < ROUNDS; r++) {
+			for (DID did : dids)
+				assertNull(did.resolve(true));
+		}
+		long sequential = System.nanoTime() - start;
+		assertEquals(DIDS * ROUNDS, server.getRequests());
+
+		server.resetRequests();
+		start = System.nanoTime();
+		for (int r = 0; r < ROUNDS; r++) {
+			Map<DID, DIDDocument> docs = DIDBackend.resolve(dids, true);
+			assertEquals(DIDS, docs.size());
+		}
+		long batch = System.nanoTime() - start;
+		assertEquals(ROUNDS, server.getRequests());
+
+		System.out.format("Resolve %d DIDs: sequential %.2f ms, batch %.2f ms\n",
+				DIDS, sequential / 1e6 / ROUNDS, batch / 1e6 / ROUNDS);
+	}
+
+	@Test
+	public void testCoalescedResolve() throws Exception {
+		final int CALLERS = 16;
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		store.publishDid(doc.getSubject(), TestConfig.storePass);
+
+		DIDResolver adapter = (DIDResolver)testData.getAdapter();
+		AtomicInteger calls = new AtomicInteger();
+		DIDBackend.initialize((requestId, did, all) -> {
+			calls.incrementAndGet();
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException ignore) {
+			}
+
+			synchronized(adapter) {
+				return adapter.resolve(requestId, did, all);
+			}
+		}, TestData.getResolverCacheDir());
+		DIDBackend.resetRequestCounters();
+
+		ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+		CountDownLatch latch = new CountDownLatch(1);
+		List<Future<DIDDocument>> futures = new ArrayList<Future<DIDDocument>>();
+		for (int i = 0; i < CALLERS; i++) {
+			futures.add(executor.submit(() -> {
+				latch.await();
+				return doc.getSubject().resolve(true);
+			}));
+		}
+
+		latch.countDown();
+		for (Future<DIDDocument> f : futures) {
+			DIDDocument resolved = f.get();
+			assertNotNull(resolved);
+			assertEquals(doc.getSubject(), resolved.getSubject());
+		}
+		executor.shutdown();
+
+		assertTrue(calls.get() < CALLERS);
+		assertEquals(calls.get(), DIDBackend.getIssuedRequests());
+		assertEquals(CALLERS - calls.get(), DIDBackend.getCoalescedRequests());
+
+		System.out.format("Resolve with %d callers: %d issued, %d coalesced\n",
+				CALLERS, DIDBackend.getIssuedRequests(),
+				DIDBackend.getCoalescedRequests());
+	}
+
+	@Test
+	public void testMemoryOnlyCache() throws Exception {
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		store.publishDid(doc.getSubject(), TestConfig.storePass);
+
+		DIDBackend.initialize((DIDResolver)testData.getAdapter());
+		ResolverCache.reset();
+		DIDBackend.resetRequestCounters();
+
+		DIDDocument resolved = doc.getSubject().resolve();
+		assertNotNull(resolved);
+		assertEquals(1, DIDBackend.getIssuedRequests());
+
+		assertSame(resolved, doc.getSubject().resolve());
+		assertEquals(1, DIDBackend.getIssuedRequests());
+		assertNull(ResolverCache.getCacheDir());
+	}
+
+	@Test
+	public void testStaleWhileRevalidate() throws Exception {
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		store.publishDid(doc.getSubject(), TestConfig.storePass);
+
+		DIDResolver adapter = (DIDResolver)testData.getAdapter();
+		CountDownLatch refreshing = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		DIDBackend.initialize((requestId, did, all) -> {
+			if (calls.incrementAndGet() > 1) {
+				try {
+					refreshing.await();
+				} catch (InterruptedException ignore) {
+				}
+			}
+
+			synchronized(adapter) {
+				return adapter.resolve(requestId, did, all);
+			}
+		}, TestData.getResolverCacheDir());
+		ResolverCache.reset();
+
+		try {
+			// Always stale, never expired
+			DIDBackend.setTTL(0, 60);
+
+			assertNotNull(doc.getSubject().resolve());
+			assertEquals(1, calls.get());
+
+			// Served from cache while the refresh is blocked
+			Thread.sleep(5);
+			DIDDocument resolved = doc.getSubject().resolve();
+			assertNotNull(resolved);
+			assertNotNull(doc.getSubject().resolve());
+
+			refreshing.countDown();
+			for (int i = 0; i < 100 && calls.get() < 2; i++)
+				Thread.sleep(10);
+			assertEquals(2, calls.get());
+
+			// Hard TTL, blocking resolve
+			DIDBackend.setTTL(0, 0);
+			Thread.sleep(5);
+			assertNotNull(doc.getSubject().resolve());
+			assertTrue(calls.get() >= 3);
+		} finally {
+			DIDBackend.setTTL(24 * 60);
+		}
+	}
+
+	@Test
+	public void testNegativeCache() throws Exception {
+		DIDResolver adapter = (DIDResolver)testData.getAdapter();
+		AtomicInteger calls = new AtomicInteger();
+		DIDBackend.initialize((requestId, did, all) -> {
+			calls.incrementAndGet();
+			synchronized(adapter) {
+				return adapter.resolve(requestId, did, all);
+			}
+		}, TestData.getResolverCacheDir());
+		ResolverCache.reset();
+		ResolverCache.resetStatistics();
+
+		DID did = store.getDid(0, TestConfig.storePass);
+		for (int i = 0; i < 10; i++)
+			assertNull(did.resolve());
+		assertEquals(1, calls.get());
+		assertEquals(9, ResolverCache.getStatistics().getNegativeHitCount());
+
+		Map<DID, DIDDocument> docs = DIDBackend.resolve(Arrays.asList(did));
+		assertNull(docs.get(did));
+		assertEquals(1, calls.get());
+
+		// Forced resolve always goes to the backend
+		assertNull(did.resolve(true));
+		assertEquals(2, calls.get());
+
+		// Published DID is not negative cached any more
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		assertEquals(did, doc.getSubject());
+		store.publishDid(did, TestConfig.storePass);
+		assertNotNull(did.resolve());
+
+		// Disabled
+		DIDBackend.setNegativeTTL(0);
+		try {
+			DID other = store.getDid(1, TestConfig.storePass);
+			calls.set(0);
+			assertNull(other.resolve());
+			assertNull(other.resolve());
+			assertEquals(2, calls.get());
+		} finally {
+			DIDBackend.setNegativeTTL(60);
+		}
+	}
+}
@@ -31,6 +31,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -41,11 +43,16 @@ import org.elastos.did.DIDDocument.Service;
 import org.elastos.did.exception.DIDException;
 import org.elastos.did.exception.DIDObjectAlreadyExistException;
 import org.elastos.did.exception.DIDObjectNotExistException;
+import org.elastos.did.exception.MalformedDocumentException;
 import org.elastos.did.util.HDKey;
+import org.elastos.did.util.JsonHelper;
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public class DIDDocumentTest {
 	@Test
@@ -1016,4 +1023,268 @@ public class DIDDocumentTest {
 			assertFalse(result);
 		}
 	}
+
+	private interface Operation {
+		void run() throws Exception;
+	}
+
+	private static long opsPerSecond(int rounds, Operation op) throws Exception {
+		for (int i = 0; i < rounds / 2; i++)
+			op.run();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			op.run();
+		long duration = System.nanoTime() - start;
+
+		return rounds * 1000000000L / duration;
+	}
+
+	@Test
+	public void testJsonCodecPerformance() throws Exception {
+		final int rounds = 2000;
+
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument.Builder db = store.newDid(TestConfig.storePass).edit();
+		Map<String, String> subject = new HashMap<String, String>();
+		subject.put("name", "John");
+		subject.put("email", "john@example.com");
+		subject.put("nation", "Singapore");
+		db.addCredential("profile", subject, TestConfig.storePass);
+		DIDDocument doc = db.seal(TestConfig.storePass);
+
+		String docJson = doc.toString(true);
+		VerifiableCredential vc = doc.getCredential("profile");
+		String vcJson = vc.toString(true);
+
+		// Per call ObjectMapper/JsonFactory, the way the SDK used to do
+		long docParseBefore = opsPerSecond(rounds, () -> {
+			JsonNode node = new ObjectMapper().readTree(docJson);
+			DIDDocument.fromJson(node);
+		});
+		long docParseAfter = opsPerSecond(rounds, () -> {
+			DIDDocument.fromJson(docJson);
+		});
+		long docWriteBefore = opsPerSecond(rounds, () -> {
+			StringWriter out = new StringWriter(2048);
+			JsonGenerator generator = new JsonFactory().createGenerator(out);
+			doc.toJson(generator, true);
+			generator.close();
+		});
+		long docWriteAfter = opsPerSecond(rounds, () -> {
+			doc.toString(true);
+		});
+
+		long vcParseBefore = opsPerSecond(rounds, () -> {
+			JsonNode node = new ObjectMapper().readTree(vcJson);
+			VerifiableCredential.fromJson(node);
+		});
+		long vcParseAfter = opsPerSecond(rounds, () -> {
+			VerifiableCredential.fromJson(vcJson);
+		});
+		long vcWriteBefore = opsPerSecond(rounds, () -> {
+			StringWriter out = new StringWriter(2048);
+			JsonGenerator generator = new JsonFactory().createGenerator(out);
+			vc.toJson(generator, true);
+			generator.close();
+		});
+		long vcWriteAfter = opsPerSecond(rounds, () -> {
+			vc.toString(true);
+		});
+
+		assertEquals(docJson, DIDDocument.fromJson(docJson).toString(true));
+		assertEquals(vcJson, VerifiableCredential.fromJson(vcJson).toString(true));
+
+		System.out.println("JSON codec throughput(ops/s), new instances vs shared:");
+		System.out.format("  DIDDocument parse:     %d vs %d\n", docParseBefore, docParseAfter);
+		System.out.format("  DIDDocument serialize: %d vs %d\n", docWriteBefore, docWriteAfter);
+		System.out.format("  Credential parse:      %d vs %d\n", vcParseBefore, vcParseAfter);
+		System.out.format("  Credential serialize:  %d vs %d\n", vcWriteBefore, vcWriteAfter);
+	}
+
+	@Test
+	public void testKeyLookupPerformance() throws Exception {
+		final int rounds = 1000000;
+
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument.Builder db = store.newDid(TestConfig.storePass).edit();
+		for (int i = 0; i < 8; i++) {
+			DIDURL id = new DIDURL(db.getSubject(), "key-" + i);
+			HDKey.DerivedKey key = TestData.generateKeypair();
+			db.addAuthenticationKey(id, key.getPublicKeyBase58());
+		}
+		DIDDocument doc = db.seal(TestConfig.storePass);
+
+		DIDURL pkid = new DIDURL(doc.getSubject(), "key-5");
+		DIDURL missing = new DIDURL(doc.getSubject(), "notExist");
+		assertNotNull(doc.getPublicKey(pkid));
+		assertTrue(doc.isAuthenticationKey(pkid));
+		assertNull(doc.getPublicKey(missing));
+
+		long getPublicKey = opsPerSecond(rounds, () -> {
+			doc.getPublicKey(pkid);
+		});
+		long isAuthenticationKey = opsPerSecond(rounds, () -> {
+			doc.isAuthenticationKey(pkid);
+		});
+		long getMissingKey = opsPerSecond(rounds, () -> {
+			doc.getPublicKey(missing);
+		});
+
+		System.out.format("Key lookup(ops/s): getPublicKey %d, isAuthenticationKey %d, missing %d\n",
+				getPublicKey, isAuthenticationKey, getMissingKey);
+	}
+
+	@Test
+	public void testRejectionPerformance() throws Exception {
+		final int rounds = 20000;
+
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		ObjectMapper mapper = new ObjectMapper();
+		ObjectNode node = (ObjectNode)mapper.readTree(doc.toString(true));
+
+		// Malformed documents corpus
+		List<ObjectNode> corpus = new ArrayList<ObjectNode>();
+		ObjectNode bad = node.deepCopy();
+		bad.remove("id");
+		corpus.add(bad);
+		bad = node.deepCopy();
+		bad.put("id", 123);
+		corpus.add(bad);
+		bad = node.deepCopy();
+		bad.put("id", "did:example:1234567890");
+		corpus.add(bad);
+		bad = node.deepCopy();
+		((ObjectNode)bad.get("publicKey").get(0)).put("id", "");
+		corpus.add(bad);
+		bad = node.deepCopy();
+		((ObjectNode)bad.get("publicKey").get(0)).put("controller", "not a did");
+		corpus.add(bad);
+		bad = node.deepCopy();
+		((ObjectNode)bad.get("publicKey").get(0)).put("publicKeyBase58", 5);
+		corpus.add(bad);
+		bad = node.deepCopy();
+		bad.put("expires", "tomorrow");
+		corpus.add(bad);
+		bad = node.deepCopy();
+		((ObjectNode)bad.get("proof")).put("created", "yesterday");
+		corpus.add(bad);
+		bad = node.deepCopy();
+		((ObjectNode)bad.get("proof")).remove("signatureValue");
+		corpus.add(bad);
+
+		String[] inputs = new String[corpus.size()];
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = mapper.writeValueAsString(corpus.get(i));
+
+			final String input = inputs[i];
+			assertThrows(MalformedDocumentException.class, () -> {
+				DIDDocument.fromJson(input);
+			}, input);
+		}
+
+		long rejections = opsPerSecond(rounds, () -> {
+			for (String input : inputs) {
+				try {
+					DIDDocument.fromJson(input);
+				} catch (MalformedDocumentException expected) {
+				}
+			}
+		}) * inputs.length;
+
+		// Exception creation alone, reflective vs constructor reference
+		long reflective = opsPerSecond(rounds * 10, () -> {
+			MalformedDocumentException.class.getDeclaredConstructor(
+					String.class, Throwable.class).newInstance("Invalid value.", null);
+		});
+		long reference = opsPerSecond(rounds * 10, () -> {
+			JsonHelper.ExceptionFactory<MalformedDocumentException> factory =
+					MalformedDocumentException::new;
+			factory.create("Invalid value.");
+		});
+
+		System.out.format("Malformed documents rejected: %d/s\n", rejections);
+		System.out.format("Exception creation(ops/s): reflective %d, factory %d\n",
+				reflective, reference);
+	}
+
+	@Test
+	public void testPooledDids() throws DIDException {
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		store.publishDid(doc.getSubject(), TestConfig.storePass);
+
+		DID.setPoolSize(100);
+		try {
+			DIDDocument parsed = DIDDocument.fromJson(doc.toString());
+
+			// The pool doesn't change the DIDs handed out by the public API
+			DID subject = parsed.getSubject();
+			subject.setAlias("alias");
+			assertEquals("alias", subject.getAlias());
+
+			assertNotNull(subject.resolve(true));
+			assertNotNull(subject.getTransactionId());
+			assertFalse(subject.isDeactivated());
+
+			DID did = parsed.getDefaultPublicKey().getDid();
+			assertEquals(subject, did);
+			assertNotNull(did.resolve(true));
+			assertNotNull(did.getTransactionId());
+		} finally {
+			DID.setPoolSize(0);
+		}
+	}
+
+	@Test
+	public void testGenuinePerformance() throws Exception {
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+
+		System.out.println("DIDDocument.isGenuine() throughput(ops/s), string vs digest:");
+		for (int count : new int[] { 1, 10, 100 }) {
+			DIDDocument.Builder db = doc.edit();
+			for (int i = doc.getCredentialCount(); i < count; i++) {
+				Map<String, String> subject = new HashMap<String, String>();
+				subject.put("name", "J\u00f6rg " + i);
+				subject.put("email", "joerg" + i + "@example.com");
+				subject.put("nation", "\u65b0\u52a0\u5761");
+				db.addCredential("cred-" + i, subject, TestConfig.storePass);
+			}
+			doc = db.seal(TestConfig.storePass);
+			assertEquals(count, doc.getCredentialCount());
+			assertTrue(doc.isGenuine());
+
+			final DIDDocument d = doc;
+			final int rounds = 20000 / count;
+
+			// The former path: normalized string, then platform charset bytes
+			long before = opsPerSecond(rounds, () -> {
+				String json = d.toJson(true, true);
+				d.verify(d.getProof().getCreator(),
+						d.getProof().getSignature(), json.getBytes());
+			});
+			long after = opsPerSecond(rounds, () -> {
+				d.isGenuine();
+			});
+
+			System.out.format("  %3d credentials: %d vs %d\n", count, before, after);
+		}
+	}
 }
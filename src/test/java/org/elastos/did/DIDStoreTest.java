@@ -24,27 +24,39 @@ package org.elastos.did;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.elastos.did.adapter.DummyAdapter;
 import org.elastos.did.exception.DIDDeactivatedException;
 import org.elastos.did.exception.DIDException;
 import org.elastos.did.exception.DIDStoreException;
 import org.elastos.did.exception.WrongPasswordException;
+import org.elastos.did.util.Base64;
+import org.elastos.did.util.EcdsaSigner;
 import org.elastos.did.util.HDKey;
+import org.elastos.did.util.JsonHelper;
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.core.JsonParser;
+
 public class DIDStoreTest {
 	@Test
 	public void testCreateEmptyStore() throws DIDException {
@@ -1163,6 +1175,39 @@ public class DIDStoreTest {
 		assertNotNull(doc);
 	}
 
+	@Test
+	public void testChangePasswordPerformance() throws DIDException {
+		final int keys = 10000;
+
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		DID did = doc.getSubject();
+		HDKey.DerivedKey key = TestData.generateKeypair();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < keys; i++)
+			store.storePrivateKey(did, new DIDURL(did, "key-" + i),
+					key.getPrivateKeyBytes(), TestConfig.storePass);
+		long stored = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		store.changePassword(TestConfig.storePass, "newpasswd");
+		long changed = System.nanoTime() - start;
+
+		byte[] data = "Hello World".getBytes();
+		DIDURL id = new DIDURL(did, "key-" + (keys - 1));
+		String sig = store.sign(did, id, "newpasswd", data);
+		assertTrue(EcdsaSigner.verify(key.getPublicKeyBytes(),
+				Base64.decode(sig, Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP),
+				data));
+
+		System.out.format("DIDStore with %d private keys(ms): store %d, changePassword %d\n",
+				keys, stored / 1000000, changed / 1000000);
+	}
+
 	@Test
 	public void testChangePasswordWithWrongPassword() throws DIDException {
     	TestData testData = new TestData();
@@ -1411,6 +1456,40 @@ public class DIDStoreTest {
 		assertTrue(Utils.equals(reDidDir, didDir));
 	}
 
+	@Test
+	public void testImportDidFromStream() throws DIDException, IOException {
+		URL url = this.getClass().getResource("/teststore");
+		File storeDir = new File(url.getPath());
+
+		DummyAdapter adapter = new DummyAdapter();
+		DIDBackend.initialize(adapter, TestData.getResolverCacheDir());
+		DIDStore store = DIDStore.open("filesystem", storeDir.getAbsolutePath(), adapter);
+
+		DID did = store.listDids(DIDStore.DID_ALL).get(0);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		store.exportDid(did, out, "password", TestConfig.storePass);
+
+		AtomicBoolean closed = new AtomicBoolean();
+		InputStream in = new ByteArrayInputStream(out.toByteArray()) {
+			@Override
+			public void close() throws IOException {
+				closed.set(true);
+				super.close();
+			}
+		};
+
+		File restoreDir = new File(TestConfig.tempDir, "restore");
+		Utils.deleteFile(restoreDir);
+		DIDStore store2 = DIDStore.open("filesystem", restoreDir.getAbsolutePath(), adapter);
+		store2.importDid(in, "password", TestConfig.storePass);
+		assertNotNull(store2.loadDid(did));
+
+		// The caller's stream is left open, the shared mapper untouched
+		assertFalse(closed.get());
+		assertTrue(JsonHelper.getObjectMapper().getFactory()
+				.isEnabled(JsonParser.Feature.AUTO_CLOSE_SOURCE));
+	}
+
 	@Test
 	public void testExportAndImportPrivateIdentity() throws DIDException, IOException {
 		URL url = this.getClass().getResource("/teststore");
@@ -1462,4 +1541,233 @@ public class DIDStoreTest {
 		assertTrue(restoreDir.exists());
 		assertTrue(Utils.equals(restoreDir, storeDir));
 	}
+
+	@Test
+	public void testUnlockSession() throws DIDException, InterruptedException {
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		byte[] data = "Hello World".getBytes();
+
+		assertFalse(store.isUnlocked());
+		assertThrows(WrongPasswordException.class, () -> {
+			store.unlock("wrongpass");
+		});
+		assertFalse(store.isUnlocked());
+
+		store.unlock(TestConfig.storePass, 0, 3);
+		assertTrue(store.isUnlocked());
+
+		for (int i = 0; i < 3; i++) {
+			String sig = doc.sign(TestConfig.storePass, data);
+			assertTrue(doc.verify(sig, data));
+		}
+
+		// Wrong password never goes through the session
+		assertThrows(WrongPasswordException.class, () -> {
+			doc.sign("wrongpass", data);
+		});
+
+		// Max uses reached, falls back to the store
+		assertFalse(store.isUnlocked());
+		assertTrue(doc.verify(doc.sign(TestConfig.storePass, data), data));
+
+		store.unlock(TestConfig.storePass, 200, 0);
+		assertTrue(doc.verify(doc.sign(TestConfig.storePass, data), data));
+		Thread.sleep(400);
+		assertFalse(store.isUnlocked());
+		assertTrue(doc.verify(doc.sign(TestConfig.storePass, data), data));
+
+		store.unlock(TestConfig.storePass);
+		assertTrue(store.isUnlocked());
+		store.lock();
+		assertFalse(store.isUnlocked());
+
+		// Changing the password ends the session
+		store.unlock(TestConfig.storePass);
+		store.changePassword(TestConfig.storePass, "newpasswd");
+		assertFalse(store.isUnlocked());
+		assertThrows(WrongPasswordException.class, () -> {
+			doc.sign(TestConfig.storePass, data);
+		});
+		assertTrue(doc.verify(doc.sign("newpasswd", data), data));
+	}
+
+	@Test
+	public void testUnlockSessionPerformance() throws DIDException {
+		final int rounds = 500;
+
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		byte[] data = "Hello World".getBytes();
+
+		for (int i = 0; i < rounds / 2; i++)
+			doc.sign(TestConfig.storePass, data);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			doc.sign(TestConfig.storePass, data);
+		long locked = System.nanoTime() - start;
+
+		store.unlock(TestConfig.storePass);
+		for (int i = 0; i < rounds / 2; i++)
+			doc.sign(TestConfig.storePass, data);
+
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			doc.sign(TestConfig.storePass, data);
+		long unlocked = System.nanoTime() - start;
+		store.lock();
+
+		System.out.format("DIDDocument.sign(ops/s): locked %d, unlocked %d\n",
+				rounds * 1000000000L / locked, rounds * 1000000000L / unlocked);
+	}
+
+	@Test
+	public void testSignAll() throws DIDException {
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+
+		List<byte[][]> payloads = new ArrayList<byte[][]>();
+		for (int i = 0; i < 50; i++)
+			payloads.add(new byte[][] { ("payload " + i).getBytes(), "nonce".getBytes() });
+
+		for (boolean parallel : new boolean[] { false, true }) {
+			List<String> sigs = doc.signAll(TestConfig.storePass, payloads, parallel);
+			assertEquals(payloads.size(), sigs.size());
+			for (int i = 0; i < payloads.size(); i++)
+				assertTrue(doc.verify(sigs.get(i), payloads.get(i)));
+		}
+
+		assertTrue(doc.signAll(TestConfig.storePass, new ArrayList<byte[][]>()).isEmpty());
+		assertThrows(WrongPasswordException.class, () -> {
+			doc.signAll("wrongpass", payloads);
+		});
+
+		// Max uses counts every signature of the batch
+		store.unlock(TestConfig.storePass, 0, 60);
+		List<String> sigs = doc.signAll(TestConfig.storePass, payloads);
+		assertTrue(doc.verify(sigs.get(49), payloads.get(49)));
+		assertTrue(store.isUnlocked());
+
+		// A batch that doesn't fit falls back, and leaves the session alone
+		sigs = doc.signAll(TestConfig.storePass, payloads);
+		assertTrue(doc.verify(sigs.get(0), payloads.get(0)));
+		assertTrue(store.isUnlocked());
+
+		// The remaining uses are still available
+		sigs = doc.signAll(TestConfig.storePass, payloads.subList(0, 10));
+		assertTrue(doc.verify(sigs.get(9), payloads.get(9)));
+		assertFalse(store.isUnlocked());
+	}
+
+	@Test
+	public void testImportDidWhileUnlocked() throws DIDException, IOException {
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		DID did = doc.getSubject();
+		DIDURL id = new DIDURL(did, "key2");
+		byte[] data = "replaced key".getBytes();
+
+		DIDDocument.Builder db = doc.edit();
+		HDKey.DerivedKey key = TestData.generateKeypair();
+		db.addAuthenticationKey("key2", key.getPublicKeyBase58());
+		doc = db.seal(TestConfig.storePass);
+		store.storeDid(doc);
+		store.storePrivateKey(did, id, key.serialize(), TestConfig.storePass);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		store.exportDid(did, out, "password", TestConfig.storePass);
+
+		// Replace the key, and sign with it from the session
+		db = doc.edit();
+		db.removePublicKey(id, true);
+		key = TestData.generateKeypair();
+		db.addAuthenticationKey("key2", key.getPublicKeyBase58());
+		doc = db.seal(TestConfig.storePass);
+		store.storeDid(doc);
+		store.storePrivateKey(did, id, key.serialize(), TestConfig.storePass);
+
+		store.unlock(TestConfig.storePass, 0, 0);
+		assertTrue(doc.verify(id, doc.sign(id, TestConfig.storePass, data), data));
+
+		// Import the exported key back, the session must not keep the old one
+		store.importDid(new ByteArrayInputStream(out.toByteArray()),
+				"password", TestConfig.storePass);
+		assertTrue(store.isUnlocked());
+
+		DIDDocument imported = store.loadDid(did);
+		String sig = imported.sign(id, TestConfig.storePass, data);
+		assertTrue(imported.verify(id, sig, data));
+		assertFalse(doc.verify(id, sig, data));
+	}
+
+	@Test
+	public void testDeterministicSigning() throws DIDException {
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+		byte[] data = "deterministic".getBytes();
+
+		assertFalse(store.isDeterministicSigning());
+		assertNotEquals(doc.sign(TestConfig.storePass, data),
+				doc.sign(TestConfig.storePass, data));
+
+		store.setDeterministicSigning(true);
+		String sig = doc.sign(TestConfig.storePass, data);
+		assertEquals(sig, doc.sign(TestConfig.storePass, data));
+		assertEquals(sig, doc.signAll(TestConfig.storePass,
+				Collections.singletonList(new byte[][] { data })).get(0));
+		assertTrue(doc.verify(sig, data));
+
+		store.setDeterministicSigning(false);
+		assertNotEquals(sig, doc.sign(TestConfig.storePass, data));
+	}
+
+	@Test
+	public void testSignAllPerformance() throws DIDException {
+		final int count = 10000;
+
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+
+		List<byte[][]> payloads = new ArrayList<byte[][]>(count);
+		for (int i = 0; i < count; i++)
+			payloads.add(new byte[][] { ("payload " + i).getBytes() });
+
+		doc.signAll(TestConfig.storePass, payloads.subList(0, 1000));
+
+		long start = System.nanoTime();
+		for (byte[][] payload : payloads)
+			doc.sign(TestConfig.storePass, payload);
+		long single = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		doc.signAll(TestConfig.storePass, payloads, false);
+		long batch = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		doc.signAll(TestConfig.storePass, payloads, true);
+		long parallel = System.nanoTime() - start;
+
+		System.out.format("Sign %d payloads(ms): one by one %d, batch %d, parallel batch %d (%d cores)\n",
+				count, single / 1000000, batch / 1000000, parallel / 1000000,
+				Runtime.getRuntime().availableProcessors());
+	}
 }
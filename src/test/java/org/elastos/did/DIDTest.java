@@ -25,10 +25,15 @@ package org.elastos.did;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.elastos.did.exception.MalformedDIDException;
+import org.elastos.did.exception.MalformedDIDURLException;
+import org.elastos.did.meta.DIDMeta;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -108,4 +113,99 @@ public class DIDTest {
 		assertFalse(did.equals(other));
 		assertFalse(did.equals("did:elastos:1234567890"));
 	}
+
+	@Test
+	public void testPool() throws MalformedDIDException, MalformedDIDURLException {
+		DID.setPoolSize(100);
+		try {
+			DID d1 = DID.valueOf(testDID);
+			DID d2 = DID.valueOf(testDID);
+			assertSame(d1, d2);
+			assertEquals(did, d1);
+			assertEquals(did.hashCode(), d1.hashCode());
+			assertEquals(1, DID.getPoolSize());
+
+			assertThrows(MalformedDIDException.class, () -> {
+				DID.valueOf("did:example:1234567890");
+			});
+
+			// Pooled DIDs are shared, they never carry the metadata
+			DIDMeta meta = new DIDMeta();
+			meta.setAlias("alias");
+			d1.setMeta(meta);
+			assertNull(d2.getAlias());
+			assertThrows(IllegalStateException.class, () -> {
+				d1.setAlias("alias");
+			});
+
+			DID owned = new DID(testDID);
+			owned.setMeta(meta);
+			assertSame(d1, DID.intern(owned));
+			assertEquals("alias", owned.getAlias());
+
+			// DIDURL keeps the pooled DID, but never hands it out
+			DIDURL url = new DIDURL(testDID + "#primary");
+			assertEquals(new DIDURL(testDID + "#secondary").getDid(), url.getDid());
+			assertFalse(url.getDid().isPooled());
+			assertNotSame(d1, url.getDid());
+			DID copy = url.getDid();
+			copy.setMeta(meta);
+			assertEquals("alias", copy.getAlias());
+			assertEquals(1, DID.getPoolSize());
+		} finally {
+			DID.setPoolSize(0);
+		}
+
+		assertNotSame(DID.valueOf(testDID), DID.valueOf(testDID));
+		assertEquals(did, DID.valueOf(testDID));
+	}
+
+	private static long usedMemory() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	// Memory retained by the ids and proof methods of the credentials
+	private static long retainedMemory(String[] dids, int credentials)
+			throws MalformedDIDURLException {
+		long before = usedMemory();
+
+		DIDURL[] holders = new DIDURL[credentials * 2];
+		for (int i = 0; i < credentials; i++) {
+			holders[i * 2] = new DIDURL(dids[i % 100] + "#primary");
+			holders[i * 2 + 1] = new DIDURL(dids[i % dids.length] + "#profile");
+		}
+
+		long used = usedMemory() - before;
+		assertEquals(credentials * 2, holders.length);
+		return used;
+	}
+
+	@Test
+	public void testPoolMemory() throws MalformedDIDURLException {
+		final int credentials = 100000;
+
+		// 100 issuers and 2000 subjects
+		String[] dids = new String[2000];
+		for (int i = 0; i < dids.length; i++)
+			dids[i] = String.format("did:elastos:iTestPool%025d", i);
+
+		long unpooled = retainedMemory(dids, credentials);
+
+		DID.setPoolSize(dids.length * 2);
+		long pooled;
+		try {
+			pooled = retainedMemory(dids, credentials);
+		} finally {
+			DID.setPoolSize(0);
+		}
+
+		System.out.format("DIDURLs retained by %d credentials: %d KB unpooled, %d KB pooled" +
+				", about %d MB saved per 1M credentials\n", credentials,
+				unpooled / 1024, pooled / 1024,
+				(unpooled - pooled) * (1000000 / credentials) / (1024 * 1024));
+	}
 }
@@ -222,4 +222,44 @@ public class DIDURLTest {
 		assertFalse(url.equals(other));
 		assertFalse(url.equals("did:elastos:1234567890#test"));
 	}
+
+	@Test
+	public void testCompareTo() throws MalformedDIDURLException {
+		String[] urls = {
+			testDID,
+			testDID + "#primary",
+			testDID + "#primary-2",
+			testDID + "#key",
+			testDID + "#" + fragment,
+			testDID + path,
+			testDID + "?" + query,
+			testURL,
+			"did:elastos:icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7p",
+			"did:elastos:icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7p#primary",
+			"did:elastos:icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pNa",
+			"did:elastos:icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pN.a#primary",
+			"did:elastos:icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pN%41#primary",
+			"did:elastos:1234567890#test"
+		};
+
+		// Should be consistent with the canonical strings
+		for (String u1 : urls) {
+			DIDURL url1 = new DIDURL(u1);
+			for (String u2 : urls) {
+				DIDURL url2 = new DIDURL(u2);
+				assertEquals(Integer.signum(u1.compareTo(u2)),
+						Integer.signum(url1.compareTo(url2)), u1 + " vs " + u2);
+				assertEquals(u1.equals(u2), url1.equals(url2));
+				if (u1.equals(u2))
+					assertEquals(url1.hashCode(), url2.hashCode());
+			}
+		}
+
+		DIDURL id = new DIDURL(testDID + "#primary");
+		assertEquals(testDID + "#primary", id.toString());
+		id.setFragment("key");
+		assertEquals(testDID + "#key", id.toString());
+		assertEquals(new DIDURL(testDID + "#key"), id);
+		assertEquals(new DIDURL(testDID + "#key").hashCode(), id.hashCode());
+	}
 }
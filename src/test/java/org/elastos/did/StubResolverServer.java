@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Minimal local JSON-RPC resolver endpoint that serves the resolve
+ * requests from a DIDResolver, e.g. the DummyAdapter.
+ */
+public class StubResolverServer {
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private DIDResolver resolver;
+	private HttpServer server;
+	private ExecutorService executor;
+	private AtomicInteger requests;
+	private int latency;
+	private boolean batchSupported = true;
+	private AtomicInteger batchFailures = new AtomicInteger();
+
+	public StubResolverServer(DIDResolver resolver, int threads)
+			throws IOException {
+		this.resolver = resolver;
+		this.requests = new AtomicInteger();
+
+		// Avoid the Nagle/delayed ACK stalls on loopback
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+		server.createContext("/", this::handle);
+		executor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	// Simulated network latency in milliseconds for every HTTP request
+	public void setLatency(int latency) {
+		this.latency = latency;
+	}
+
+	// Reply a JSON-RPC error to the batch requests, like the older nodes
+	public void setBatchSupported(boolean batchSupported) {
+		this.batchSupported = batchSupported;
+	}
+
+	// Reply HTTP 503 to the next count batch requests, like an overloaded node
+	public void failBatches(int count) {
+		batchFailures.set(count);
+	}
+
+	// Number of HTTP requests served
+	public int getRequests() {
+		return requests.get();
+	}
+
+	public void resetRequests() {
+		requests.set(0);
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void resolve(JsonNode request, OutputStream out) throws Exception {
+		String id = request.get("id").asText();
+		JsonNode params = request.get("params");
+
+		InputStream is;
+		synchronized(resolver) {
+			is = resolver.resolve(id, params.get("did").asText(),
+				params.get("all").asBoolean());
+		}
+
+		byte[] buffer = new byte[4096];
+		int len;
+		while ((len = is.read(buffer)) != -1)
+			out.write(buffer, 0, len);
+		is.close();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+
+		try {
+			JsonNode request = mapper.readTree(exchange.getRequestBody());
+			exchange.getRequestBody().close();
+
+			if (latency > 0)
+				Thread.sleep(latency);
+
+			if (request.isArray() && batchFailures.getAndUpdate(
+					(n) -> n > 0 ? n - 1 : 0) > 0) {
+				exchange.sendResponseHeaders(503, -1);
+				exchange.close();
+				return;
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+			if (request.isArray() && !batchSupported) {
+				out.write("{\"id\":null,\"error\":{\"code\":-32600,\"message\":\"Invalid request\"}}".getBytes());
+			} else if (request.isArray()) {
+				out.write('[');
+				for (int i = 0; i < request.size(); i++) {
+					if (i > 0)
+						out.write(',');
+
+					resolve(request.get(i), out);
+				}
+				out.write(']');
+			} else {
+				resolve(request, out);
+			}
+
+			byte[] response = out.toByteArray();
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, response.length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(response);
+			os.close();
+		} catch (Exception e) {
+			exchange.sendResponseHeaders(500, -1);
+			exchange.close();
+		}
+	}
+}
@@ -23,12 +23,17 @@
 package org.elastos.did;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.elastos.did.exception.DIDException;
 import org.junit.jupiter.api.Test;
@@ -140,4 +145,119 @@ public class VerifiablePresentationTest {
 		assertEquals(testData.loadPresentationNormalizedJson(),
 				vp.toString());
 	}
+
+	@Test
+	public void testVerifyPerformance() throws DIDException {
+		final int rounds = 10000;
+
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		DIDDocument issuerDoc = store.newDid(TestConfig.storePass);
+		store.publishDid(issuerDoc.getSubject(), TestConfig.storePass);
+		DIDDocument userDoc = store.newDid(TestConfig.storePass);
+		store.publishDid(userDoc.getSubject(), TestConfig.storePass);
+
+		Map<String, String> props = new HashMap<String, String>();
+		props.put("name", "John");
+		props.put("email", "john@example.com");
+
+		Issuer issuer = new Issuer(issuerDoc);
+		VerifiablePresentation.Builder pb = VerifiablePresentation.createFor(
+				userDoc.getSubject(), store);
+		for (int i = 0; i < 4; i++) {
+			VerifiableCredential vc = issuer.issueFor(userDoc.getSubject())
+					.id("cred-" + i)
+					.type("BasicProfileCredential", "InternetAccountCredential")
+					.properties(props)
+					.seal(TestConfig.storePass);
+			pb.credentials(vc);
+		}
+
+		VerifiablePresentation vp = pb.realm("https://example.com/")
+				.nonce("873172f58701a9ee686f0630204fee59")
+				.seal(TestConfig.storePass);
+
+		long start = System.nanoTime();
+		assertTrue(vp.isValid());
+		long cold = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			assertTrue(vp.isValid());
+		long hot = System.nanoTime() - start;
+
+		System.out.format("VerifiablePresentation.isValid(): first %d us, then %d x %d ns\n",
+				cold / 1000, rounds, hot / rounds);
+	}
+
+	@Test
+	public void testParallelValidPerformance() throws DIDException {
+		final int rounds = 10;
+
+		TestData testData = new TestData();
+		DIDStore store = testData.setup(true);
+		testData.initIdentity();
+
+		Issuer[] issuers = new Issuer[4];
+		for (int i = 0; i < issuers.length; i++) {
+			DIDDocument issuerDoc = store.newDid(TestConfig.storePass);
+			store.publishDid(issuerDoc.getSubject(), TestConfig.storePass);
+			issuers[i] = new Issuer(issuerDoc);
+		}
+
+		DIDDocument userDoc = store.newDid(TestConfig.storePass);
+		store.publishDid(userDoc.getSubject(), TestConfig.storePass);
+
+		Map<String, String> props = new HashMap<String, String>();
+		props.put("name", "John");
+		props.put("email", "john@example.com");
+
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors());
+
+		try {
+			for (int count : new int[] { 1, 10, 100 }) {
+				VerifiablePresentation.Builder pb = VerifiablePresentation.createFor(
+						userDoc.getSubject(), store);
+				for (int i = 0; i < count; i++) {
+					VerifiableCredential vc = issuers[i % issuers.length]
+							.issueFor(userDoc.getSubject())
+							.id("cred-" + i)
+							.type("BasicProfileCredential", "InternetAccountCredential")
+							.properties(props)
+							.seal(TestConfig.storePass);
+					pb.credentials(vc);
+				}
+
+				String json = pb.realm("https://example.com/")
+						.nonce("873172f58701a9ee686f0630204fee59")
+						.seal(TestConfig.storePass).toString();
+
+				String tampered = json.replace("john@example.com", "jane@example.com");
+				assertFalse(VerifiablePresentation.fromJson(tampered).isValid());
+				assertFalse(VerifiablePresentation.fromJson(tampered).isValid(executor));
+
+				// Fresh objects each round, only the resolved documents are warm
+				assertTrue(VerifiablePresentation.fromJson(json).isValid());
+				assertTrue(VerifiablePresentation.fromJson(json).isValid(executor));
+
+				long start = System.nanoTime();
+				for (int i = 0; i < rounds; i++)
+					assertTrue(VerifiablePresentation.fromJson(json).isValid());
+				long sequential = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < rounds; i++)
+					assertTrue(VerifiablePresentation.fromJson(json).isValid(executor));
+				long parallel = System.nanoTime() - start;
+
+				System.out.format("VerifiablePresentation with %d credentials: isValid() %d us, isValid(executor) %d us\n",
+						count, sequential / rounds / 1000, parallel / rounds / 1000);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import org.elastos.did.DID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AppendOnlyCacheTest {
+	private static final long TTL = 60 * 60 * 1000;
+
+	private File file;
+	private AppendOnlyCache cache;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		file = new File(System.getProperty("java.io.tmpdir") +
+				File.separator + "AppendOnlyCacheTest" + File.separator +
+				"resolver.cache");
+		file.delete();
+		cache = new AppendOnlyCache(file, 0);
+	}
+
+	@AfterEach
+	public void cleanup() throws IOException {
+		cache.close();
+		file.delete();
+	}
+
+	private static DID createDid(int index) throws Exception {
+		return new DID(String.format("did:elastos:iTestAppendOnlyCache%08d", index));
+	}
+
+	private static String createJson(DID did, int version) {
+		return "{\"did\":\"" + did + "\",\"status\":3,\"version\":" + version + "}";
+	}
+
+	@Test
+	public void testStoreAndLoad() throws Exception {
+		long now = System.currentTimeMillis();
+
+		for (int i = 0; i < 10; i++)
+			cache.store(createDid(i), createJson(createDid(i), 0), now);
+
+		cache.store(createDid(3), createJson(createDid(3), 1), now);
+
+		assertEquals(10, cache.getEntryCount());
+		assertEquals(createJson(createDid(3), 1),
+				cache.load(createDid(3), TTL).getJson());
+		assertEquals(now, cache.load(createDid(5), TTL).getTimestamp());
+		assertNull(cache.load(createDid(10), TTL));
+		assertNull(cache.load(createDid(5), -1));
+
+		cache.close();
+		cache = new AppendOnlyCache(file, 0);
+
+		assertEquals(10, cache.getEntryCount());
+		for (int i = 0; i < 10; i++) {
+			PersistentCache.Record record = cache.load(createDid(i), TTL);
+			assertNotNull(record);
+			assertEquals(createJson(createDid(i), i == 3 ? 1 : 0),
+					record.getJson());
+		}
+
+		cache.clear();
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, file.length());
+	}
+
+	@Test
+	public void testRecovery() throws Exception {
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++)
+			cache.store(createDid(i), createJson(createDid(i), 0), now);
+
+		long validSize = cache.getFileSize();
+		cache.store(createDid(5), createJson(createDid(5), 0), now);
+		cache.close();
+
+		// Torn write of the last record
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 7);
+		raf.close();
+
+		cache = new AppendOnlyCache(file, 0);
+		assertEquals(5, cache.getEntryCount());
+		assertEquals(validSize, file.length());
+		assertNull(cache.load(createDid(5), TTL));
+
+		// Corrupted record
+		cache.store(createDid(5), createJson(createDid(5), 0), now);
+		cache.close();
+		raf = new RandomAccessFile(file, "rw");
+		raf.seek(validSize + 30);
+		raf.write('X');
+		raf.close();
+
+		cache = new AppendOnlyCache(file, 0);
+		assertEquals(5, cache.getEntryCount());
+		assertEquals(validSize, file.length());
+
+		for (int i = 0; i < 5; i++)
+			assertNotNull(cache.load(createDid(i), TTL));
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		long now = System.currentTimeMillis();
+		DID did = createDid(0);
+		cache.store(createDid(1), createJson(createDid(1), 0), now);
+
+		for (int i = 0; i < 1000; i++)
+			cache.store(did, createJson(did, i), now);
+
+		long recordSize = cache.getFileSize() / 2;
+		assertTrue(cache.getFileSize() <= recordSize * 4);
+		assertEquals(createJson(did, 999), cache.load(did, TTL).getJson());
+		assertTrue(!new File(file.getPath() + ".compact").exists());
+
+		cache.close();
+		cache = new AppendOnlyCache(file, 0);
+		assertEquals(2, cache.getEntryCount());
+		assertEquals(createJson(did, 999), cache.load(did, TTL).getJson());
+	}
+
+	@Test
+	public void testWarmUp() throws Exception {
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 20; i++) {
+			DID did = createDid(i);
+			cache.store(did, new ResolveResult(did,
+					ResolveResult.STATUS_NOT_FOUND).toJson(), now);
+		}
+
+		// Make 15..19 the hottest
+		for (int i = 15; i < 20; i++) {
+			for (int n = 0; n < i; n++)
+				cache.load(createDid(i), TTL);
+		}
+
+		List<DID> hot = cache.getHotEntries(5);
+		assertEquals(5, hot.size());
+		for (int i = 0; i < 5; i++)
+			assertEquals(createDid(19 - i), hot.get(i));
+
+		// Access counts are kept by compaction
+		cache.compact();
+		cache.close();
+		cache = new AppendOnlyCache(file, 0);
+		assertEquals(createDid(19), cache.getHotEntries(1).get(0));
+
+		ResolverCache.setPersistentCache(cache);
+		try {
+			// Drop the in-memory entries
+			ResolverCache.configure(ResolverCache.DEFAULT_MAX_ENTRIES,
+					ResolverCache.DEFAULT_MAX_WEIGHT,
+					ResolverCache.DEFAULT_CONCURRENCY_LEVEL);
+			ResolverCache.resetStatistics();
+
+			assertEquals(5, ResolverCache.warmUp(5, TTL));
+			for (int i = 15; i < 20; i++)
+				assertNotNull(ResolverCache.load(createDid(i), TTL));
+			assertEquals(5, ResolverCache.getStatistics().getHitCount());
+			assertEquals(0, ResolverCache.getStatistics().getMissCount());
+		} finally {
+			ResolverCache.setPersistentCache(null);
+		}
+
+		cache = new AppendOnlyCache(file, 0);
+	}
+
+	@Test
+	public void testMemoryHits() throws Exception {
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 3; i++) {
+			DID did = createDid(i);
+			cache.store(did, new ResolveResult(did,
+					ResolveResult.STATUS_NOT_FOUND).toJson(), now);
+		}
+
+		// Loaded twice from the file, but the hottest in memory
+		cache.load(createDid(1), TTL);
+		cache.load(createDid(1), TTL);
+
+		ResolverCache.setPersistentCache(cache);
+		try {
+			ResolverCache.configure(ResolverCache.DEFAULT_MAX_ENTRIES,
+					ResolverCache.DEFAULT_MAX_WEIGHT,
+					ResolverCache.DEFAULT_CONCURRENCY_LEVEL);
+
+			for (int i = 0; i < 10; i++)
+				assertNotNull(ResolverCache.load(createDid(2), TTL));
+
+			assertEquals(createDid(2), cache.getHotEntries(1).get(0));
+		} finally {
+			// Closed by the ResolverCache, the hits are persisted
+			ResolverCache.setPersistentCache(null);
+		}
+
+		cache = new AppendOnlyCache(file, 0);
+		List<DID> hot = cache.getHotEntries(2);
+		assertEquals(createDid(2), hot.get(0));
+		assertEquals(createDid(1), hot.get(1));
+	}
+}
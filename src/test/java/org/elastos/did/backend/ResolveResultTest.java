@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.elastos.did.DIDDocument;
+import org.elastos.did.DIDStore;
+import org.elastos.did.TestConfig;
+import org.elastos.did.TestData;
+import org.elastos.did.exception.MalformedResolveResultException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ResolveResultTest {
+	private static final int CREDENTIALS = 50;
+	private static final int WARMUPS = 1000;
+	private static final int ROUNDS = 1000;
+
+	private static final JsonFactory factory = new JsonFactory();
+
+	private DIDStore store;
+
+	@BeforeEach
+	public void setup() throws Exception {
+		TestData testData = new TestData();
+		store = testData.setup(true);
+		testData.initIdentity();
+	}
+
+	private byte[] createResult(int credentials) throws Exception {
+		DIDDocument doc = store.newDid(TestConfig.storePass);
+
+		DIDDocument.Builder db = doc.edit();
+		for (int i = 0; i < credentials; i++) {
+			Map<String, String> subject = new HashMap<String, String>();
+			subject.put("name", "Test credential " + i);
+			subject.put("email", "test" + i + "@example.com");
+			subject.put("description", "Credential used by the resolve result parser test");
+			db.addCredential("cred-" + i, subject, TestConfig.storePass);
+		}
+		doc = db.seal(TestConfig.storePass);
+
+		IDChainRequest request = IDChainRequest.create(doc,
+				doc.getDefaultPublicKey(), TestConfig.storePass);
+
+		ResolveResult rr = new ResolveResult(doc.getSubject(),
+				ResolveResult.STATUS_VALID);
+		rr.addTransactionInfo(new IDTransactionInfo("0123456789abcdef",
+				new Date(), request));
+
+		return rr.toJson().getBytes("UTF-8");
+	}
+
+	private static ResolveResult parseTree(byte[] json) throws Exception {
+		JsonNode node = new ObjectMapper().readTree(json);
+		return ResolveResult.fromJson(node);
+	}
+
+	private static ResolveResult parseStreaming(byte[] json) throws Exception {
+		try (JsonParser parser = factory.createParser(json)) {
+			parser.nextToken();
+			return ResolveResult.fromJson(parser);
+		}
+	}
+
+	@Test
+	public void testStreamingParse() throws Exception {
+		byte[] json = createResult(3);
+
+		ResolveResult expected = parseTree(json);
+		ResolveResult rr = parseStreaming(json);
+
+		assertEquals(expected.getDid(), rr.getDid());
+		assertEquals(expected.getStatus(), rr.getStatus());
+		assertEquals(1, rr.getTransactionCount());
+
+		IDTransactionInfo ti = rr.getTransactionInfo(0);
+		IDTransactionInfo eti = expected.getTransactionInfo(0);
+		assertEquals(eti.getTransactionId(), ti.getTransactionId());
+		assertEquals(eti.getTimestamp(), ti.getTimestamp());
+		assertEquals(eti.getOperation(), ti.getOperation());
+		assertEquals(eti.getPayload(), ti.getPayload());
+		assertEquals(eti.getRequest().getDocument().toString(true),
+				ti.getRequest().getDocument().toString(true));
+		assertEquals(3, ti.getRequest().getDocument().getCredentialCount());
+		assertTrue(ti.getRequest().isValid());
+		assertEquals(new String(json, "UTF-8"), rr.toJson());
+	}
+
+	@Test
+	public void testStreamingParseError() throws Exception {
+		assertThrows(MalformedResolveResultException.class, () -> {
+			parseStreaming("{\"status\":3}".getBytes());
+		});
+
+		assertThrows(MalformedResolveResultException.class, () -> {
+			parseStreaming("{\"did\":\"did:elastos:icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pN\",\"status\":0}".getBytes());
+		});
+
+		assertThrows(MalformedResolveResultException.class, () -> {
+			parseStreaming("{\"did\":\"did:elastos:icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pN\",\"status\":0,\"transaction\":[{\"txid\":\"abc\"}]}".getBytes());
+		});
+
+		ResolveResult rr = parseStreaming("{\"did\":\"did:elastos:icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pN\",\"status\":3,\"ignored\":{\"a\":[1,2]}}".getBytes());
+		assertEquals(ResolveResult.STATUS_NOT_FOUND, rr.getStatus());
+		assertEquals(0, rr.getTransactionCount());
+	}
+
+	private interface Parser {
+		ResolveResult parse(byte[] json) throws Exception;
+	}
+
+	// Returns {nanoseconds per op, bytes allocated per op}
+	private static long[] measure(Parser parser, byte[] json) throws Exception {
+		for (int i = 0; i < WARMUPS; i++)
+			parser.parse(json);
+
+		java.lang.management.ThreadMXBean mxbean = ManagementFactory.getThreadMXBean();
+		boolean allocation = mxbean instanceof com.sun.management.ThreadMXBean &&
+				((com.sun.management.ThreadMXBean)mxbean).isThreadAllocatedMemorySupported();
+		long tid = Thread.currentThread().getId();
+
+		long bytes = allocation ?
+				((com.sun.management.ThreadMXBean)mxbean).getThreadAllocatedBytes(tid) : 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+			parser.parse(json);
+		long duration = System.nanoTime() - start;
+		if (allocation)
+			bytes = ((com.sun.management.ThreadMXBean)mxbean).getThreadAllocatedBytes(tid) - bytes;
+		else
+			bytes = -ROUNDS;
+
+		return new long[] { duration / ROUNDS, bytes / ROUNDS };
+	}
+
+	@Test
+	public void testParsePerformance() throws Exception {
+		byte[] json = createResult(CREDENTIALS);
+
+		long[] tree = measure(ResolveResultTest::parseTree, json);
+		long[] streaming = measure(ResolveResultTest::parseStreaming, json);
+
+		System.out.format("Resolve result %d bytes, %d credentials\n",
+				json.length, CREDENTIALS);
+		System.out.format("  tree:      %d us/op, %d bytes/op\n",
+				tree[0] / 1000, tree[1]);
+		System.out.format("  streaming: %d us/op, %d bytes/op\n",
+				streaming[0] / 1000, streaming[1]);
+	}
+}
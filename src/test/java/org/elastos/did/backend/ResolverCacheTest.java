@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.elastos.did.DID;
+import org.elastos.did.util.LRUCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ResolverCacheTest {
+	private static final long TTL = 60 * 60 * 1000;
+
+	private static final int THREADS = 8;
+	private static final int ENTRIES = 1000;
+	private static final int LOADS = 100000;
+
+	private File cacheDir;
+
+	@BeforeEach
+	public void setup() {
+		cacheDir = new File(System.getProperty("java.io.tmpdir") +
+				File.separator + "ResolverCacheTest");
+		ResolverCache.setCacheDir(cacheDir);
+		ResolverCache.reset();
+		ResolverCache.resetStatistics();
+	}
+
+	@AfterEach
+	public void cleanup() {
+		ResolverCache.configure(ResolverCache.DEFAULT_MAX_ENTRIES,
+				ResolverCache.DEFAULT_MAX_WEIGHT,
+				ResolverCache.DEFAULT_CONCURRENCY_LEVEL);
+		ResolverCache.reset();
+	}
+
+	private static DID createDid(int index) throws Exception {
+		return new DID(String.format("did:elastos:iTestResolverCache%08d", index));
+	}
+
+	private static ResolveResult createResult(int index) throws Exception {
+		return new ResolveResult(createDid(index), ResolveResult.STATUS_NOT_FOUND);
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+		ResolveResult rr = createResult(0);
+		ResolverCache.store(rr);
+
+		assertSame(rr, ResolverCache.load(rr.getDid(), TTL));
+		assertNull(ResolverCache.load(createDid(1), TTL));
+
+		// Expired in memory and on disk
+		assertNull(ResolverCache.load(rr.getDid(), -1));
+
+		// Reload from disk
+		ResolveResult loaded = ResolverCache.load(rr.getDid(), TTL);
+		assertNotNull(loaded);
+		assertEquals(rr.getDid(), loaded.getDid());
+		assertEquals(rr.getStatus(), loaded.getStatus());
+		assertSame(loaded, ResolverCache.load(rr.getDid(), TTL));
+
+		ResolverCache.Statistics stats = ResolverCache.getStatistics();
+		assertEquals(2, stats.getHitCount());
+		assertEquals(3, stats.getMissCount());
+		assertEquals(1, stats.getSize());
+	}
+
+	@Test
+	public void testMemoryOnly() throws Exception {
+		ResolverCache.setCacheDir(null);
+
+		ResolveResult rr = createResult(0);
+		ResolverCache.store(rr);
+		assertSame(rr, ResolverCache.load(rr.getDid(), TTL));
+		assertNull(ResolverCache.load(rr.getDid(), -1));
+		assertNull(ResolverCache.load(rr.getDid(), TTL));
+		assertEquals(0, cacheDir.list().length);
+
+		ResolverCache.store(rr);
+		ResolverCache.reset();
+		assertNull(ResolverCache.load(rr.getDid(), TTL));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		int weight = createResult(0).toJson().length();
+
+		ResolverCache.configure(0, weight * 10, 1);
+		for (int i = 0; i < 100; i++)
+			ResolverCache.store(createResult(i));
+
+		ResolverCache.Statistics stats = ResolverCache.getStatistics();
+		assertTrue(stats.getSize() <= 10);
+		assertEquals(100 - stats.getSize(), stats.getEvictionCount());
+
+		// Evicted entries are still on disk
+		assertNotNull(ResolverCache.load(createDid(0), TTL));
+
+		ResolverCache.configure(20, 0, 1);
+		for (int i = 0; i < 100; i++)
+			ResolverCache.store(createResult(i));
+		assertTrue(ResolverCache.getStatistics().getSize() <= 20);
+	}
+
+	private interface Loader {
+		Object load(DID did) throws Exception;
+	}
+
+	private static long measure(List<DID> dids, Loader loader)
+			throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<Future<?>>(THREADS);
+
+		long start = System.nanoTime();
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(executor.submit(() -> {
+				Random random = new Random();
+				for (int i = 0; i < LOADS; i++)
+					assertNotNull(loader.load(dids.get(random.nextInt(dids.size()))));
+
+				return null;
+			}));
+		}
+
+		for (Future<?> f : futures)
+			f.get();
+		long duration = System.nanoTime() - start;
+
+		executor.shutdown();
+		return duration;
+	}
+
+	@Test
+	public void testConcurrentLoadPerformance() throws Exception {
+		List<DID> dids = new ArrayList<DID>(ENTRIES);
+		Map<DID, ResolveResult> lru = LRUCache.createInstance(ENTRIES, ENTRIES);
+		for (int i = 0; i < ENTRIES; i++) {
+			ResolveResult rr = createResult(i);
+			ResolverCache.store(rr);
+			lru.put(rr.getDid(), rr);
+			dids.add(rr.getDid());
+		}
+
+		// The previous load path: file stats and a synchronized LRU map
+		Loader before = (did) -> {
+			File file = new File(cacheDir, did.getMethodSpecificId());
+			if (!file.exists() ||
+					System.currentTimeMillis() > file.lastModified() + TTL)
+				return null;
+
+			return lru.get(did);
+		};
+		Loader after = (did) -> ResolverCache.load(did, TTL);
+
+		// Warm up
+		measure(dids, before);
+		measure(dids, after);
+
+		long beforeTime = measure(dids, before);
+		long afterTime = measure(dids, after);
+
+		System.out.format("ResolverCache.load(%d threads): before %.0f ops/s, after %.0f ops/s\n",
+				THREADS, THREADS * LOADS * 1e9 / beforeTime,
+				THREADS * LOADS * 1e9 / afterTime);
+		System.out.println("ResolverCache statistics: " + ResolverCache.getStatistics());
+	}
+}
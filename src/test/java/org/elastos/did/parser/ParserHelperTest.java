@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did.parser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ParserHelperTest {
+	private static final String[] PIECES = {
+		"did", ":", "elastos", "#", ";", "/", "?", "&", "=", " ", "\t",
+		"%41", "%4f", "%4", "%", "%zz", "~", ".", "-", "_", "a", "Z", "9",
+		"abc", "did:", "did:elastos:", "icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pN",
+		"primary", "key-2", "v1.0", "~home", "é"
+	};
+
+	private static class Result extends DIDURLBaseListener {
+		private String method;
+		private String id;
+		private String fragment;
+		private boolean other;
+
+		@Override
+		public void exitMethod(DIDURLParser.MethodContext ctx) {
+			method = ctx.getText();
+		}
+
+		@Override
+		public void exitMethodSpecificString(
+				DIDURLParser.MethodSpecificStringContext ctx) {
+			id = ctx.getText();
+		}
+
+		@Override
+		public void enterParams(DIDURLParser.ParamsContext ctx) {
+			other = true;
+		}
+
+		@Override
+		public void enterPath(DIDURLParser.PathContext ctx) {
+			other = true;
+		}
+
+		@Override
+		public void enterQuery(DIDURLParser.QueryContext ctx) {
+			other = true;
+		}
+
+		@Override
+		public void exitFrag(DIDURLParser.FragContext ctx) {
+			fragment = ctx.getText();
+		}
+	}
+
+	private static String randomInput(Random rnd) {
+		StringBuilder sb = new StringBuilder();
+		if (rnd.nextBoolean())
+			sb.append("did:elastos:");
+
+		int n = rnd.nextInt(8) + 1;
+		for (int i = 0; i < n; i++)
+			sb.append(PIECES[rnd.nextInt(PIECES.length)]);
+
+		return sb.toString();
+	}
+
+	// Returns true if the fast path accepted the input
+	private static boolean check(String input, boolean didOnly) {
+		String[] parts = ParserHelper.parseSimple(input, didOnly);
+		if (parts == null)
+			return false;
+
+		Result result = new Result();
+		try {
+			ParserHelper.parse(input, didOnly, result);
+		} catch (IllegalArgumentException e) {
+			throw new AssertionError("Accepted by the fast path only: " + input, e);
+		}
+
+		assertEquals("elastos", result.method, input);
+		assertEquals(result.id, parts[0], input);
+		assertEquals(result.fragment, parts[1], input);
+		assertFalse(result.other, input);
+		return true;
+	}
+
+	@Test
+	public void testParseSimple() {
+		assertArrayEquals(new String[] { "icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pN", null },
+				ParserHelper.parseSimple("did:elastos:icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pN", true));
+		assertArrayEquals(new String[] { "icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pN", "primary" },
+				ParserHelper.parseSimple("did:elastos:icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pN#primary", false));
+		assertArrayEquals(new String[] { "~a%41.b-c", "k%4F-1.0" },
+				ParserHelper.parseSimple("did:elastos:~a%41.b-c#k%4F-1.0", false));
+
+		// Left to the full parser
+		assertNull(ParserHelper.parseSimple("did:elastos:abc#primary", true));
+		assertNull(ParserHelper.parseSimple("did:elastos:abc;elastos:foo=bar", false));
+		assertNull(ParserHelper.parseSimple("did:elastos:abc/path?x=1#f", false));
+		assertNull(ParserHelper.parseSimple("did:elastos:did", false));
+		assertNull(ParserHelper.parseSimple("did:elastos:abc#did", false));
+		assertNull(ParserHelper.parseSimple("did:elastos:.abc", false));
+		assertNull(ParserHelper.parseSimple("did:elastos:a~b", true));
+		assertNull(ParserHelper.parseSimple("did:elastos:abc%4", false));
+		assertNull(ParserHelper.parseSimple("did:elastos:abc#", false));
+		assertNull(ParserHelper.parseSimple("did:elastos:abc ", false));
+		assertNull(ParserHelper.parseSimple("did:foo:abc", false));
+	}
+
+	@Test
+	public void testDifferentialFuzz() {
+		Random rnd = new Random(0x5eed);
+		int accepted = 0;
+
+		for (int i = 0; i < 100000; i++) {
+			String input = randomInput(rnd);
+			if (check(input, true))
+				accepted++;
+			if (check(input, false))
+				accepted++;
+		}
+
+		// Make sure the fuzzer actually exercises the fast path
+		assertTrue(accepted > 1000, "Accepted " + accepted);
+	}
+
+	private interface Operation {
+		void run();
+	}
+
+	private static long opsPerSecond(int rounds, Operation op) {
+		for (int i = 0; i < rounds / 2; i++)
+			op.run();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			op.run();
+		long duration = System.nanoTime() - start;
+
+		return rounds * 1000000000L / duration;
+	}
+
+	@Test
+	public void testParsePerformance() {
+		final int rounds = 100000;
+		final String url = "did:elastos:icJ4z2DULrHEzYSvjKNJpKyhqFDxvYV7pN#primary";
+
+		long antlr = opsPerSecond(rounds, () -> {
+			ParserHelper.parse(url, false, new Result());
+		});
+		long simple = opsPerSecond(rounds, () -> {
+			ParserHelper.parseSimple(url, false);
+		});
+
+		System.out.format("DIDURL parse(ops/s): ANTLR %d, fast path %d\n",
+				antlr, simple);
+	}
+}
@@ -24,8 +24,25 @@ package org.elastos.did.util;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.CryptoException;
+import org.spongycastle.crypto.digests.MD5Digest;
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
 
 public class Aes256cbcTest {
 	private static final String passwd = "secret";
@@ -76,4 +93,120 @@ public class Aes256cbcTest {
 
 		assertEquals(base64, cipher);
 	}
+
+	@Test
+	public void testContext() throws Exception {
+		Aes256cbc.Context context = new Aes256cbc.Context(passwd);
+		Aes256cbc.Context wrong = new Aes256cbc.Context("wrong");
+		byte[] expected = Base64.decode(cipherBase64,
+				Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
+
+		for (int i = 0; i < 3; i++) {
+			assertArrayEquals(expected, context.encrypt(plain.getBytes()));
+			assertArrayEquals(plain.getBytes(), context.decrypt(expected));
+
+			// A failed decryption should not break the thread's cipher
+			assertThrows(CryptoException.class, () -> wrong.decrypt(expected));
+		}
+
+		// A destroyed context is unusable
+		context.destroy();
+		wrong.destroy();
+		assertThrows(IllegalStateException.class, () -> context.encrypt(plain.getBytes()));
+		assertThrows(IllegalStateException.class, () -> context.decrypt(expected));
+		context.destroy();
+	}
+
+	@Test
+	public void testContextConcurrency() throws Exception {
+		Aes256cbc.Context context = new Aes256cbc.Context(passwd);
+		byte[] expected = Base64.decode(cipherBase64,
+				Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < 100; i++) {
+				results.add(executor.submit(() ->
+						Arrays.equals(expected, context.encrypt(plain.getBytes())) &&
+						Arrays.equals(plain.getBytes(), context.decrypt(expected))));
+			}
+
+			for (Future<Boolean> result : results)
+				assertTrue(result.get());
+		} finally {
+			executor.shutdown();
+			context.destroy();
+		}
+	}
+
+	// The per operation key derivation and cipher allocation
+	private static byte[] legacyCrypt(boolean encrypt, byte[] input,
+			String passwd) throws CryptoException {
+		byte[] pass = passwd.getBytes();
+		byte[] key = new byte[32];
+		byte[] iv = new byte[16];
+
+		MD5Digest md = new MD5Digest();
+		md.update(pass, 0, pass.length);
+		md.doFinal(key, 0);
+		md.reset();
+		md.update(key, 0, 16);
+		md.update(pass, 0, pass.length);
+		md.doFinal(key, 16);
+		md.reset();
+		md.update(key, 16, 16);
+		md.update(pass, 0, pass.length);
+		md.doFinal(iv, 0);
+
+		BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(
+				new CBCBlockCipher(new AESEngine()));
+		cipher.init(encrypt, new ParametersWithIV(new KeyParameter(key), iv));
+
+		byte[] output = new byte[cipher.getOutputSize(input.length)];
+		int len = cipher.processBytes(input, 0, input.length, output, 0);
+		len += cipher.doFinal(output, len);
+
+		return Arrays.copyOf(output, len);
+	}
+
+	@Test
+	public void testReEncryptPerformance() throws Exception {
+		final int keys = 10000;
+		final String newPasswd = "newsecret";
+
+		List<byte[]> secrets = new ArrayList<byte[]>(keys);
+		for (int i = 0; i < keys; i++) {
+			byte[] sk = new byte[32];
+			Arrays.fill(sk, (byte)i);
+			secrets.add(Aes256cbc.encrypt(sk, passwd));
+		}
+
+		long start = System.nanoTime();
+		for (byte[] secret : secrets) {
+			byte[] sk = legacyCrypt(false, secret, passwd);
+			legacyCrypt(true, sk, newPasswd);
+		}
+		long legacy = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		Aes256cbc.Context oldContext = new Aes256cbc.Context(passwd);
+		Aes256cbc.Context newContext = new Aes256cbc.Context(newPasswd);
+		List<byte[]> results = new ArrayList<byte[]>(keys);
+		for (byte[] secret : secrets) {
+			byte[] sk = oldContext.decrypt(secret);
+			results.add(newContext.encrypt(sk));
+		}
+		oldContext.destroy();
+		newContext.destroy();
+		long reused = System.nanoTime() - start;
+
+		for (int i = 0; i < keys; i += 1000)
+			assertArrayEquals(legacyCrypt(true,
+					legacyCrypt(false, secrets.get(i), passwd), newPasswd),
+					results.get(i));
+
+		System.out.format("Re-encrypt %d keys(ms): per operation key %d, one context each %d\n",
+				keys, legacy / 1000000, reused / 1000000);
+	}
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.elastos.did.Mnemonic;
+import org.elastos.did.exception.DIDException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class BatchVerifierTest {
+	private static HDKey.DerivedKey key;
+	private static EcdsaSigner.VerificationKey verificationKey;
+
+	@BeforeAll
+	public static void setup() throws DIDException {
+		String mnemonic = Mnemonic.getInstance().generate();
+
+		HDKey root = HDKey.fromMnemonic(mnemonic, "");
+		key = root.derive(0);
+		verificationKey = EcdsaSigner.decodePublicKey(key.getPublicKeyBytes());
+	}
+
+	private static byte[] digest(String message) {
+		EcdsaSigner.DigestStream out = new EcdsaSigner.DigestStream();
+		byte[] data = message.getBytes();
+		out.write(data, 0, data.length);
+		return out.digest();
+	}
+
+	private void testBatch(BatchVerifier verifier) {
+		byte[] digest = digest("The quick brown fox jumps over the lazy dog.");
+		byte[] sig = EcdsaSigner.signDigest(key.getPrivateKeyBytes(), digest);
+		byte[] modSig = Arrays.copyOf(sig, sig.length);
+		modSig[8] += 1;
+
+		List<Boolean> callbacks = new ArrayList<Boolean>();
+
+		verifier.add(verificationKey, sig, digest, callbacks::add);
+		verifier.add(verificationKey, modSig, digest, callbacks::add);
+		verifier.add(key.getPublicKeyBytes(), sig, digest);
+		verifier.add(verificationKey, sig, digest("Hello"));
+		verifier.add(verificationKey, new byte[10], digest);
+		for (int i = 0; i < 8; i++) {
+			byte[] d = digest("message " + i);
+			verifier.add(verificationKey,
+					EcdsaSigner.signDigest(key.getPrivateKeyBytes(), d), d);
+		}
+
+		assertEquals(13, verifier.size());
+		assertEquals(12, verifier.getUniqueCount());
+
+		boolean[] expected = new boolean[13];
+		Arrays.fill(expected, true);
+		expected[1] = false;
+		expected[3] = false;
+		expected[4] = false;
+
+		assertArrayEquals(expected, verifier.verify());
+		assertEquals(Arrays.asList(true, false), callbacks);
+	}
+
+	@Test
+	public void testSequential() {
+		testBatch(new BatchVerifier());
+	}
+
+	@Test
+	public void testParallel() {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			testBatch(new BatchVerifier(executor));
+		} finally {
+			executor.shutdown();
+		}
+
+		testBatch(new BatchVerifier(BatchVerifier.getDefaultExecutor()));
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, new BatchVerifier().verify().length);
+	}
+}
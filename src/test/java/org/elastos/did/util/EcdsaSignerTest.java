@@ -24,14 +24,26 @@ package org.elastos.did.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import org.elastos.did.Mnemonic;
 import org.elastos.did.exception.DIDException;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.spongycastle.asn1.sec.SECNamedCurves;
+import org.spongycastle.asn1.x9.X9ECParameters;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.params.ECPrivateKeyParameters;
+import org.spongycastle.crypto.params.ECPublicKeyParameters;
+import org.spongycastle.crypto.signers.ECDSASigner;
+import org.spongycastle.crypto.signers.RandomDSAKCalculator;
 
 public class EcdsaSignerTest {
 	private static final String plain = "The quick brown fox jumps over the lazy dog.";
@@ -115,4 +127,175 @@ public class EcdsaSignerTest {
 		result = EcdsaSigner.verify(pk, sig, input.getBytes());
 		assertTrue(result);
 	}
+
+	@Test
+	public void testVerificationKey() {
+		EcdsaSigner.VerificationKey vk = EcdsaSigner.decodePublicKey(key.getPublicKeyBytes());
+		assertTrue(Arrays.equals(key.getPublicKeyBytes(), vk.getPublicKeyBytes()));
+
+		assertTrue(EcdsaSigner.verify(vk, sig, plain.getBytes(), nonce.getBytes()));
+		assertFalse(EcdsaSigner.verify(vk, sig, (plain + ".").getBytes(), nonce.getBytes()));
+
+		byte[] modSig = Arrays.copyOf(sig, sig.length);
+		modSig[8] +=1;
+		assertFalse(EcdsaSigner.verify(vk, modSig, plain.getBytes(), nonce.getBytes()));
+	}
+
+	// The verification before the key decoding was cached
+	private static boolean legacyVerify(byte[] publicKey, byte[] sig, byte[] ... inputs) {
+		X9ECParameters curve = SECNamedCurves.getByName("secp256r1");
+		ECPublicKeyParameters keyParams = new ECPublicKeyParameters(
+				curve.getCurve().decodePoint(publicKey), EcdsaSigner.CURVE);
+
+		ECDSASigner signer = new ECDSASigner(new RandomDSAKCalculator());
+		signer.init(false, keyParams);
+
+		byte digest[] = new byte[32];
+		SHA256Digest sha256 = new SHA256Digest();
+		for (byte[] input : inputs)
+			sha256.update(input, 0, input.length);
+		sha256.doFinal(digest, 0);
+
+		BigInteger r = new BigInteger(1, Arrays.copyOfRange(sig, 0, 32));
+		BigInteger s = new BigInteger(1, Arrays.copyOfRange(sig, 32, 64));
+		return signer.verifySignature(digest, r, s);
+	}
+
+	@Test
+	public void testVerifyPerformance() {
+		final int rounds = 2000;
+		String pkBase58 = key.getPublicKeyBase58();
+		byte[] data = plain.getBytes();
+		byte[] salt = nonce.getBytes();
+
+		for (int i = 0; i < rounds / 2; i++) {
+			assertTrue(legacyVerify(Base58.decode(pkBase58), sig, data, salt));
+			assertTrue(EcdsaSigner.verify(Base58.decode(pkBase58), sig, data, salt));
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			legacyVerify(Base58.decode(pkBase58), sig, data, salt);
+		long legacy = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			EcdsaSigner.verify(Base58.decode(pkBase58), sig, data, salt);
+		long decoded = System.nanoTime() - start;
+
+		EcdsaSigner.VerificationKey vk = EcdsaSigner.decodePublicKey(
+				Base58.decode(pkBase58));
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			EcdsaSigner.verify(vk, sig, data, salt);
+		long predecoded = System.nanoTime() - start;
+
+		System.out.format("EcdsaSigner.verify(ops/s): before %d, per call decode %d, pre-decoded key %d\n",
+				rounds * 1000000000L / legacy, rounds * 1000000000L / decoded,
+				rounds * 1000000000L / predecoded);
+	}
+
+	@Test
+	public void testDeterministic() {
+		byte[] sig1 = EcdsaSigner.sign(key.getPrivateKeyBytes(), true, plain.getBytes(), nonce.getBytes());
+		byte[] sig2 = EcdsaSigner.sign(key.getPrivateKeyBytes(), true, plain.getBytes(), nonce.getBytes());
+		assertTrue(Arrays.equals(sig1, sig2));
+		assertTrue(EcdsaSigner.verify(key.getPublicKeyBytes(), sig1, plain.getBytes(), nonce.getBytes()));
+
+		byte[] sig3 = EcdsaSigner.sign(key.getPrivateKeyBytes(), true, plain.getBytes());
+		assertFalse(Arrays.equals(sig1, sig3));
+		assertTrue(EcdsaSigner.verify(key.getPublicKeyBytes(), sig3, plain.getBytes()));
+
+		List<byte[][]> inputs = new ArrayList<byte[][]>();
+		inputs.add(new byte[][] { plain.getBytes(), nonce.getBytes() });
+		assertTrue(Arrays.equals(sig1,
+				EcdsaSigner.signAll(key.getPrivateKeyBytes(), inputs, true).get(0)));
+
+		// Random nonces by default, and when asked explicitly
+		byte[] sig4 = EcdsaSigner.sign(key.getPrivateKeyBytes(), plain.getBytes());
+		byte[] sig5 = EcdsaSigner.sign(key.getPrivateKeyBytes(), false, plain.getBytes());
+		assertNotEquals(Arrays.toString(sig3), Arrays.toString(sig4));
+		assertNotEquals(Arrays.toString(sig4), Arrays.toString(sig5));
+		assertTrue(EcdsaSigner.verify(key.getPublicKeyBytes(), sig4, plain.getBytes()));
+		assertTrue(EcdsaSigner.verify(key.getPublicKeyBytes(), sig5, plain.getBytes()));
+	}
+
+	// The signing before the signers were reused
+	private static byte[] legacySign(byte[] privateKey, byte[] data) {
+		ECPrivateKeyParameters keyParams = new ECPrivateKeyParameters(
+				new BigInteger(1, privateKey), EcdsaSigner.CURVE);
+
+		ECDSASigner signer = new ECDSASigner(new RandomDSAKCalculator());
+		signer.init(true, keyParams);
+
+		byte digest[] = new byte[32];
+		SHA256Digest sha256 = new SHA256Digest();
+		sha256.update(data, 0, data.length);
+		sha256.doFinal(digest, 0);
+
+		BigInteger[] rs = signer.generateSignature(digest);
+		return rs[0].toByteArray();
+	}
+
+	private interface Operation {
+		void run();
+	}
+
+	private static long concurrentOpsPerSecond(int threads, int rounds,
+			Operation op) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<Thread>(threads);
+		for (int i = 0; i < threads; i++) {
+			Thread t = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException ignore) {
+					return;
+				}
+
+				for (int j = 0; j < rounds / threads; j++)
+					op.run();
+			});
+			t.start();
+			workers.add(t);
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread t : workers)
+			t.join();
+		long duration = System.nanoTime() - begin;
+
+		return (rounds / threads) * threads * 1000000000L / duration;
+	}
+
+	@Test
+	public void testSignConcurrency() throws InterruptedException {
+		final int rounds = 320;
+		byte[] privateKey = key.getPrivateKeyBytes();
+		byte[] data = plain.getBytes();
+
+		// Warm up
+		for (int i = 0; i < rounds; i++) {
+			legacySign(privateKey, data);
+			EcdsaSigner.sign(privateKey, data);
+		}
+
+		System.out.format("EcdsaSigner.sign(ops/s) with %d cores\n",
+				Runtime.getRuntime().availableProcessors());
+		System.out.println("  threads  legacy  random  deterministic");
+		for (int threads = 1; threads <= 32; threads *= 2) {
+			long legacy = concurrentOpsPerSecond(threads, rounds,
+					() -> legacySign(privateKey, data));
+
+			long random = concurrentOpsPerSecond(threads, rounds,
+					() -> EcdsaSigner.sign(privateKey, false, data));
+
+			long deterministic = concurrentOpsPerSecond(threads, rounds,
+					() -> EcdsaSigner.sign(privateKey, true, data));
+
+			System.out.format("  %7d  %6d  %6d  %13d\n", threads,
+					legacy, random, deterministic);
+		}
+	}
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.elastos.did.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.elastos.did.Constants;
+import org.junit.jupiter.api.Test;
+
+public class JsonHelperTest {
+	// 1600-01-01 to 9999-12-31
+	private static final long MIN_TIME = -11676096000000L;
+	private static final long MAX_TIME = 253402300799000L;
+
+	private static SimpleDateFormat createDateFormat(String pattern) {
+		SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+		format.setTimeZone(Constants.UTC);
+		return format;
+	}
+
+	private static long randomTime(Random rnd) {
+		return MIN_TIME + (long)(rnd.nextDouble() * (MAX_TIME - MIN_TIME));
+	}
+
+	@Test
+	public void testDateCodec() throws ParseException {
+		SimpleDateFormat format = createDateFormat(Constants.DATE_FORMAT);
+		SimpleDateFormat isoFormat = createDateFormat(Constants.DATE_FORMAT_ISO_8601);
+
+		assertEquals("2020-02-29T23:59:59Z",
+				JsonHelper.formatDate(new Date(1583020799999L)));
+		assertEquals(1583020799000L,
+				JsonHelper.parseDate("2020-02-29T23:59:59Z").getTime());
+		assertEquals(1583020799123L,
+				JsonHelper.parseDate("2020-02-29T23:59:59.123Z").getTime());
+
+		// Same results as SimpleDateFormat
+		Random rnd = new Random(0x5eed);
+		for (int i = 0; i < 100000; i++) {
+			Date date = new Date(randomTime(rnd));
+
+			String str = format.format(date);
+			assertEquals(str, JsonHelper.formatDate(date));
+			assertEquals(format.parse(str), JsonHelper.parseDate(str));
+
+			str = isoFormat.format(date);
+			assertEquals(date, JsonHelper.parseDate(str));
+		}
+
+		// Unusual inputs go through the lenient SimpleDateFormat
+		String[] unusual = {
+			"2020-02-30T00:00:00Z", "2020-13-01T00:00:00Z",
+			"2020-01-01T24:00:00Z", "2020-1-1T0:0:0Z",
+			"2020-01-01T00:00:00Zextra", "1582-10-10T00:00:00Z",
+			"0001-01-01T00:00:00Z"
+		};
+		for (String str : unusual)
+			assertEquals(format.parse(str), JsonHelper.parseDate(str), str);
+
+		Date early = new Date(MIN_TIME - 1000);
+		assertEquals(format.format(early), JsonHelper.formatDate(early));
+
+		assertThrows(ParseException.class, () -> {
+			JsonHelper.parseDate("2020-01-01");
+		});
+		assertThrows(ParseException.class, () -> {
+			JsonHelper.parseDate("not a date");
+		});
+	}
+
+	@Test
+	public void testDateCodecConcurrency() throws Exception {
+		final int threads = 8;
+		final int rounds = 50000;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int t = 0; t < threads; t++) {
+			final long seed = t;
+			futures.add(executor.submit(() -> {
+				SimpleDateFormat format = createDateFormat(Constants.DATE_FORMAT);
+				Random rnd = new Random(seed);
+				int errors = 0;
+
+				for (int i = 0; i < rounds; i++) {
+					// Mix in the dates handled by the slow path
+					long time = (i % 10 == 0) ? MIN_TIME - rnd.nextInt(1000000) * 1000L
+							: randomTime(rnd) / 1000 * 1000;
+					Date date = new Date(time);
+
+					String str = JsonHelper.formatDate(date);
+					if (!str.equals(format.format(date)) ||
+							!JsonHelper.parseDate(str).equals(date))
+						errors++;
+				}
+
+				return errors;
+			}));
+		}
+
+		int errors = 0;
+		for (Future<Integer> future : futures)
+			errors += future.get();
+		executor.shutdown();
+
+		assertEquals(0, errors);
+	}
+
+	private interface Operation {
+		void run() throws Exception;
+	}
+
+	private static long opsPerSecond(int rounds, Operation op) throws Exception {
+		for (int i = 0; i < rounds / 2; i++)
+			op.run();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			op.run();
+		long duration = System.nanoTime() - start;
+
+		return rounds * 1000000000L / duration;
+	}
+
+	@Test
+	public void testDateCodecPerformance() throws Exception {
+		final int rounds = 200000;
+
+		SimpleDateFormat format = createDateFormat(Constants.DATE_FORMAT);
+		SimpleDateFormat isoFormat = createDateFormat(Constants.DATE_FORMAT_ISO_8601);
+		String expires = "2025-01-03T07:35:14Z";
+		String created = "2020-01-03T07:35:14.123Z";
+		Date date = new Date();
+
+		// The previous implementation: SimpleDateFormat with a ParseException
+		// to fall back to ISO 8601
+		long parseBefore = opsPerSecond(rounds, () -> {
+			format.parse(expires);
+		});
+		long isoParseBefore = opsPerSecond(rounds, () -> {
+			try {
+				format.parse(created);
+			} catch (ParseException ignore) {
+				isoFormat.parse(created);
+			}
+		});
+		long formatBefore = opsPerSecond(rounds, () -> {
+			format.format(date);
+		});
+
+		long parseAfter = opsPerSecond(rounds, () -> {
+			JsonHelper.parseDate(expires);
+		});
+		long isoParseAfter = opsPerSecond(rounds, () -> {
+			JsonHelper.parseDate(created);
+		});
+		long formatAfter = opsPerSecond(rounds, () -> {
+			JsonHelper.formatDate(date);
+		});
+
+		System.out.println("Date codec(ops/s), SimpleDateFormat vs JsonHelper:");
+		System.out.format("  parse:     %d vs %d\n", parseBefore, parseAfter);
+		System.out.format("  parse ISO: %d vs %d\n", isoParseBefore, isoParseAfter);
+		System.out.format("  format:    %d vs %d\n", formatBefore, formatAfter);
+	}
+}
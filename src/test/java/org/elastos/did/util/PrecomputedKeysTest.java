@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.elastos.did.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.elastos.did.Mnemonic;
+import org.elastos.did.exception.DIDException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.spongycastle.math.ec.ECPoint;
+import org.spongycastle.math.ec.FixedPointPreCompInfo;
+import org.spongycastle.math.ec.FixedPointUtil;
+
+public class PrecomputedKeysTest {
+	private static final String plain = "The quick brown fox jumps over the lazy dog.";
+
+	private static HDKey root;
+	private static HDKey.DerivedKey key;
+	private static byte[] sig;
+
+	@BeforeAll
+	public static void setup() throws DIDException {
+		String mnemonic = Mnemonic.getInstance().generate();
+
+		root = HDKey.fromMnemonic(mnemonic, "");
+		key = root.derive(0);
+
+		sig = EcdsaSigner.sign(key.getPrivateKeyBytes(), plain.getBytes());
+	}
+
+	@AfterEach
+	public void cleanup() {
+		PrecomputedKeys.configure(0);
+		PrecomputedKeys.resetStatistics();
+	}
+
+	@Test
+	public void testVerify() {
+		PrecomputedKeys.configure(1024 * 1024, 6, 2);
+
+		EcdsaSigner.VerificationKey vk = EcdsaSigner.decodePublicKey(
+				key.getPublicKeyBytes());
+
+		byte[] modSig = Arrays.copyOf(sig, sig.length);
+		modSig[8] += 1;
+
+		for (int i = 0; i < 5; i++) {
+			assertTrue(EcdsaSigner.verify(vk, sig, plain.getBytes()));
+			assertFalse(EcdsaSigner.verify(vk, modSig, plain.getBytes()));
+			assertFalse(EcdsaSigner.verify(vk, sig, (plain + ".").getBytes()));
+		}
+
+		// Signatures by other keys
+		for (int i = 1; i < 4; i++) {
+			byte[] s = EcdsaSigner.sign(root.derive(i).getPrivateKeyBytes(),
+					plain.getBytes());
+			assertFalse(EcdsaSigner.verify(vk, s, plain.getBytes()));
+		}
+
+		PrecomputedKeys.Statistics stats = PrecomputedKeys.getStatistics();
+		assertEquals(1, stats.getPrecomputeCount());
+		assertEquals(1, stats.getSize());
+		assertEquals(PrecomputedKeys.getTableSize(6), stats.getMemory());
+		assertEquals(2, stats.getMissCount());
+		assertEquals(16, stats.getHitCount());
+	}
+
+	@Test
+	public void testMemoryBudget() throws DIDException {
+		PrecomputedKeys.configure(PrecomputedKeys.getTableSize(5) * 3, 5, 1);
+
+		for (int i = 0; i < 6; i++) {
+			HDKey.DerivedKey k = root.derive(i);
+			byte[] s = EcdsaSigner.sign(k.getPrivateKeyBytes(), plain.getBytes());
+			assertTrue(EcdsaSigner.verify(k.getPublicKeyBytes(), s, plain.getBytes()));
+		}
+
+		PrecomputedKeys.Statistics stats = PrecomputedKeys.getStatistics();
+		assertEquals(6, stats.getPrecomputeCount());
+		assertEquals(3, stats.getSize());
+		assertEquals(3, stats.getEvictionCount());
+		assertTrue(stats.getMemory() <= PrecomputedKeys.getTableSize(5) * 3);
+	}
+
+	@Test
+	public void testWidth() {
+		assertThrows(IllegalArgumentException.class, () -> {
+			PrecomputedKeys.configure(1024 * 1024, PrecomputedKeys.MIN_WIDTH - 1, 1);
+		});
+		assertThrows(IllegalArgumentException.class, () -> {
+			PrecomputedKeys.configure(1024 * 1024, PrecomputedKeys.MAX_WIDTH + 1, 1);
+		});
+
+		// The table is built with the configured width, no rebuild
+		PrecomputedKeys.configure(1024 * 1024, PrecomputedKeys.MIN_WIDTH, 1);
+		EcdsaSigner.VerificationKey vk = EcdsaSigner.decodePublicKey(
+				key.getPublicKeyBytes());
+		assertTrue(EcdsaSigner.verify(vk, sig, plain.getBytes()));
+		assertTrue(EcdsaSigner.verify(vk, sig, plain.getBytes()));
+
+		ECPoint point = PrecomputedKeys.lookup(key.getPublicKeyBytes());
+		assertNotNull(point);
+		FixedPointPreCompInfo info = FixedPointUtil.getFixedPointPreCompInfo(
+				point.getCurve().getPreCompInfo(point, FixedPointUtil.PRECOMP_NAME));
+		assertEquals(PrecomputedKeys.MIN_WIDTH, info.getWidth());
+	}
+
+	@Test
+	public void testPerformance() {
+		final int rounds = 2000;
+		byte[] data = plain.getBytes();
+		EcdsaSigner.VerificationKey vk = EcdsaSigner.decodePublicKey(
+				key.getPublicKeyBytes());
+
+		for (int i = 0; i < rounds / 2; i++)
+			assertTrue(EcdsaSigner.verify(vk, sig, data));
+
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			EcdsaSigner.verify(vk, sig, data);
+		long cold = System.nanoTime() - start;
+
+		System.out.format("EcdsaSigner.verify(ops/s): cold key %d",
+				rounds * 1000000000L / cold);
+
+		for (int width : new int[] { 6, 8, 10 }) {
+			PrecomputedKeys.configure(16 * 1024 * 1024, width, 1);
+
+			start = System.nanoTime();
+			assertTrue(EcdsaSigner.verify(vk, sig, data));
+			long precompute = System.nanoTime() - start;
+
+			for (int i = 0; i < rounds / 2; i++)
+				assertTrue(EcdsaSigner.verify(vk, sig, data));
+
+			start = System.nanoTime();
+			for (int i = 0; i < rounds; i++)
+				EcdsaSigner.verify(vk, sig, data);
+			long hot = System.nanoTime() - start;
+
+			System.out.format(", hot key(width %d, %d KB, %d us to build) %d",
+					width, PrecomputedKeys.getTableSize(width) / 1024,
+					precompute / 1000, rounds * 1000000000L / hot);
+		}
+
+		System.out.println();
+	}
+}
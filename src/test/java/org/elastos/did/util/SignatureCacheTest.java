@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2019 Elastos Foundation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.elastos.did.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.elastos.did.Mnemonic;
+import org.elastos.did.exception.DIDException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class SignatureCacheTest {
+	private static final String plain = "The quick brown fox jumps over the lazy dog.";
+
+	private static HDKey.DerivedKey key;
+	private static byte[] sig;
+
+	@BeforeAll
+	public static void setup() throws DIDException {
+		String mnemonic = Mnemonic.getInstance().generate();
+
+		HDKey root = HDKey.fromMnemonic(mnemonic, "");
+		key = root.derive(0);
+
+		sig = EcdsaSigner.sign(key.getPrivateKeyBytes(), plain.getBytes());
+	}
+
+	@AfterEach
+	public void cleanup() {
+		SignatureCache.configure(0);
+		SignatureCache.resetStatistics();
+	}
+
+	@Test
+	public void testPositiveOnly() {
+		SignatureCache.configure(100);
+		SignatureCache.resetStatistics();
+
+		byte[] modSig = Arrays.copyOf(sig, sig.length);
+		modSig[8] += 1;
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(EcdsaSigner.verify(key.getPublicKeyBytes(), sig, plain.getBytes()));
+			assertFalse(EcdsaSigner.verify(key.getPublicKeyBytes(), modSig, plain.getBytes()));
+			assertFalse(EcdsaSigner.verify(key.getPublicKeyBytes(), sig,
+					(plain + ".").getBytes()));
+		}
+
+		SignatureCache.Statistics stats = SignatureCache.getStatistics();
+		assertEquals(2, stats.getHitCount());
+		assertEquals(7, stats.getMissCount());
+		assertEquals(1, stats.getSize());
+		assertEquals(2.0 / 9, stats.getHitRate(), 0.0001);
+	}
+
+	@Test
+	public void testEviction() throws DIDException {
+		SignatureCache.configure(2);
+		SignatureCache.resetStatistics();
+
+		for (int i = 0; i < 4; i++) {
+			byte[] data = (plain + i).getBytes();
+			byte[] s = EcdsaSigner.sign(key.getPrivateKeyBytes(), data);
+			assertTrue(EcdsaSigner.verify(key.getPublicKeyBytes(), s, data));
+		}
+
+		SignatureCache.Statistics stats = SignatureCache.getStatistics();
+		assertEquals(4, stats.getMissCount());
+		assertEquals(2, stats.getEvictionCount());
+		assertEquals(2, stats.getSize());
+	}
+
+	@Test
+	public void testDisabled() {
+		assertFalse(SignatureCache.isEnabled());
+
+		assertTrue(EcdsaSigner.verify(key.getPublicKeyBytes(), sig, plain.getBytes()));
+		assertTrue(EcdsaSigner.verify(key.getPublicKeyBytes(), sig, plain.getBytes()));
+
+		SignatureCache.Statistics stats = SignatureCache.getStatistics();
+		assertEquals(0, stats.getHitCount());
+		assertEquals(0, stats.getMissCount());
+	}
+
+	@Test
+	public void testPerformance() {
+		final int rounds = 2000;
+		byte[] data = plain.getBytes();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			assertTrue(EcdsaSigner.verify(key.getPublicKeyBytes(), sig, data));
+		long uncached = System.nanoTime() - start;
+
+		SignatureCache.configure(1000);
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			assertTrue(EcdsaSigner.verify(key.getPublicKeyBytes(), sig, data));
+		long cached = System.nanoTime() - start;
+
+		System.out.format("EcdsaSigner.verify(ops/s): uncached %d, cached %d, %s\n",
+				rounds * 1000000000L / uncached, rounds * 1000000000L / cached,
+				SignatureCache.getStatistics());
+	}
+}